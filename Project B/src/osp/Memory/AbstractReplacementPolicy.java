@@ -0,0 +1,85 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: Common part of the replacement policies that pick one victim at a
+ * time. selectVictim() keeps asking the policy for victims and frees the clean
+ * ones until wantFree frames are free; the first dirty victim is handed back to
+ * the fault handler, which swaps it out. selectDirtyVictims() goes on past
+ * the dirty victims and collects them for a batched writeback instead.
+ *
+ * @OSPProject Memory
+ */
+abstract class AbstractReplacementPolicy implements ReplacementPolicy {
+	protected final FrameTable frames;
+	protected int wantFree = 1;
+
+	protected AbstractReplacementPolicy(FrameTable frames) {
+		this.frames = frames;
+	}
+
+	/**
+	 * Purpose: Picks the next frame to evict.
+	 *
+	 * Output: An occupied frame that may be evicted, or null if there is none.
+	 *
+	 * @OSPProject Memory
+	 */
+	protected abstract PolicyFrame pickVictim();
+
+	public PolicyFrame selectVictim() {
+		while (frames.numFreeFrames() < wantFree) {
+			PolicyFrame victim = pickVictim();
+			if (victim == null) {
+				break;
+			}
+			if (victim.isDirty()) {
+				return victim;
+			}
+			frames.freeFrame(victim);
+		}
+		return frames.getFreeFrame();
+	}
+
+	public List<FrameTableEntry> selectDirtyVictims(int max) {
+		List<FrameTableEntry> batch = new ArrayList<FrameTableEntry>();
+		while (frames.numFreeFrames() + batch.size() < wantFree && batch.size() < max) {
+			// reserved victims are not evictable, so they are not picked twice
+			FrameTableEntry victim = (FrameTableEntry) pickVictim();
+			if (victim == null) {
+				break;
+			}
+			if (victim.isDirty()) {
+				Writeback.reserve(victim);
+				batch.add(victim);
+			} else {
+				frames.freeFrame(victim);
+			}
+		}
+		return batch;
+	}
+
+	public void pageLoaded(PolicyFrame frame) {
+	}
+
+	public void pageUnloaded(PolicyFrame frame) {
+	}
+
+	public void pageDeallocated(PolicyFrame frame) {
+		pageUnloaded(frame);
+	}
+
+	public int getWantFree() {
+		return wantFree;
+	}
+
+	public void setWantFree(int wantFree) {
+		this.wantFree = Math.max(1, wantFree);
+	}
+
+	public String toString() {
+		return getName() + "(wantFree " + wantFree + ")";
+	}
+
+}
@@ -0,0 +1,68 @@
+package osp.Memory;
+
+/**
+ * Purpose: LRU approximation by aging. Every frame has an 8 bit age counter.
+ * Each time the policy is asked for a victim the counters are shifted right
+ * and the reference bit of the frame is shifted in at the top, then the
+ * reference bits are cleared. The evictable frame with the smallest counter
+ * (the least recently used, as far as the reference bits can tell) is the
+ * victim; among equal counters a clean frame wins.
+ *
+ * @OSPProject Memory
+ */
+class AgingPolicy extends AbstractReplacementPolicy {
+	private final int[] age = new int[frames.size()];
+
+	AgingPolicy(FrameTable frames) {
+		super(frames);
+	}
+
+	public String getName() {
+		return "LRU";
+	}
+
+	public void pageLoaded(PolicyFrame frame) {
+		// the faulting reference counts as a use
+		age[frame.getID()] = 0x80;
+	}
+
+	public PolicyFrame selectVictim() {
+		tick();
+		return super.selectVictim();
+	}
+
+	/**
+	 * Purpose: Ages every occupied frame by one period.
+	 *
+	 * @OSPProject Memory
+	 */
+	private void tick() {
+		for (int i = 0; i < age.length; i++) {
+			PolicyFrame frame = frames.getFrame(i);
+			if (frame.getPage() == null) {
+				continue;
+			}
+			age[i] >>>= 1;
+			if (frame.isReferenced()) {
+				age[i] |= 0x80;
+				frame.setReferenced(false);
+			}
+		}
+	}
+
+	protected PolicyFrame pickVictim() {
+		PolicyFrame victim = null;
+		for (int i = 0; i < age.length; i++) {
+			PolicyFrame frame = frames.getFrame(i);
+			if (!frames.isEvictable(frame)) {
+				continue;
+			}
+			if (victim == null || age[i] < age[victim.getID()]
+					|| (age[i] == age[victim.getID()] && victim.isDirty() && !frame.isDirty())) {
+				victim = frame;
+			}
+		}
+		return victim;
+	}
+
+}
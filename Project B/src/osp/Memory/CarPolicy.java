@@ -0,0 +1,157 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: CAR (Clock with Adaptive Replacement), the ARC policy adapted to
+ * reference bits. Resident pages are kept on two clocks: T1 holds pages seen
+ * once since they were loaded, T2 pages seen again. Two ghost lists remember
+ * the pages recently evicted from T1 (B1) and from T2 (B2), without frames. A
+ * fault on a B1 ghost means T1 is too small and moves the target size p of T1
+ * up; a fault on a B2 ghost moves it down. Pages that come back from a ghost
+ * list go straight to T2. Only evictions leave ghosts; the pages of a task
+ * that ends are dropped without one (pageDeallocated()).
+ *
+ * The hand works on T1 while T1 holds at least p pages, and on T2 otherwise.
+ * A referenced page at the head of T1 moves to T2, a referenced page at the
+ * head of T2 goes to the back of T2, and an unreferenced one is the victim. A
+ * sequential sweep or a burst of random references only passes through T1
+ * and cannot push the pages of T2 out.
+ *
+ * The fault handler sets the reference bit of a page it has just loaded, so
+ * the first time the hand meets a new page in T1 it only clears the bit; the
+ * page has to be referenced again before the next turn to reach T2.
+ *
+ * @OSPProject Memory
+ */
+class CarPolicy extends AbstractReplacementPolicy {
+	private final int size = frames.size();
+	private final FrameList t1 = new FrameList(size);
+	private final FrameList t2 = new FrameList(size);
+	// ghost lists, oldest first
+	private final LinkedHashSet<Object> b1 = new LinkedHashSet<Object>();
+	private final LinkedHashSet<Object> b2 = new LinkedHashSet<Object>();
+	// per frame: the page it was loaded with, and whether the hand has not met
+	// it in T1 yet
+	private final Object[] pages = new Object[size];
+	private final boolean[] fresh = new boolean[size];
+	// target size of T1
+	private int p = 0;
+
+	CarPolicy(FrameTable frames) {
+		super(frames);
+	}
+
+	public String getName() {
+		return "CAR";
+	}
+
+	public void pageLoaded(PolicyFrame frame) {
+		int id = frame.getID();
+		Object page = frame.getPage();
+		t1.remove(id);
+		t2.remove(id);
+		pages[id] = page;
+		fresh[id] = true;
+
+		if (b1.contains(page)) {
+			p = Math.min(size, p + Math.max(1, b2.size() / b1.size()));
+			b1.remove(page);
+			t2.append(id);
+		} else if (b2.contains(page)) {
+			p = Math.max(0, p - Math.max(1, b1.size() / b2.size()));
+			b2.remove(page);
+			t2.append(id);
+		} else {
+			t1.append(id);
+			// T1 and B1 together remember at most one page per frame, and all
+			// four lists at most two
+			while (t1.size() + b1.size() > size && !b1.isEmpty()) {
+				removeOldest(b1);
+			}
+			while (t1.size() + t2.size() + b1.size() + b2.size() > 2 * size) {
+				removeOldest(b2.isEmpty() ? b1 : b2);
+			}
+		}
+	}
+
+	public void pageUnloaded(PolicyFrame frame) {
+		int id = frame.getID();
+		Object page = pages[id];
+		pages[id] = null;
+		if (page == null) {
+			return;
+		}
+		if (t1.contains(id)) {
+			t1.remove(id);
+			b1.add(page);
+		} else if (t2.contains(id)) {
+			t2.remove(id);
+			b2.add(page);
+		}
+	}
+
+	public void pageDeallocated(PolicyFrame frame) {
+		// a page of an ended task leaves no ghost: it cannot come back, and
+		// a ghost would only push out real history and move p
+		int id = frame.getID();
+		pages[id] = null;
+		t1.remove(id);
+		t2.remove(id);
+	}
+
+	protected PolicyFrame pickVictim() {
+		int turns = 2 * (t1.size() + t2.size()) + 2;
+		for (int n = 0; n < turns && t1.size() + t2.size() > 0; n++) {
+			boolean fromT1 = t1.size() > 0 && (t1.size() >= Math.max(1, p) || t2.size() == 0);
+			FrameList list = fromT1 ? t1 : t2;
+			int id = list.head();
+			PolicyFrame frame = frames.getFrame(id);
+			list.remove(id);
+
+			if (frame.getPage() == null) {
+				// emptied without being reported
+				pages[id] = null;
+				continue;
+			}
+			if (frame.isReferenced()) {
+				frame.setReferenced(false);
+				if (fromT1 && fresh[id]) {
+					list.append(id);
+				} else {
+					t2.append(id);
+				}
+				fresh[id] = false;
+				continue;
+			}
+			fresh[id] = false;
+			if (frames.isEvictable(frame)) {
+				// the victim stays listed until pageUnloaded() moves it to a
+				// ghost list
+				list.push(id);
+				return frame;
+			}
+			list.append(id);
+		}
+		// frames that never reached the clocks
+		for (int id = 0; id < size; id++) {
+			PolicyFrame frame = frames.getFrame(id);
+			if (frames.isEvictable(frame)) {
+				return frame;
+			}
+		}
+		return null;
+	}
+
+	public String toString() {
+		return getName() + "(wantFree " + wantFree + ", p " + p + ", T1 " + t1.size() + ", T2 " + t2.size()
+				+ ", B1 " + b1.size() + ", B2 " + b2.size() + ")";
+	}
+
+	private static void removeOldest(Set<Object> ghosts) {
+		Iterator<Object> it = ghosts.iterator();
+		it.next();
+		it.remove();
+	}
+
+}
@@ -0,0 +1,122 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: The Clock (second chance) replacement policy. This is the algorithm
+ * that used to live in PageFaultHandler.SecondChance(), with the cursor and
+ * wantFree owned by the policy instead of MMU.
+ *
+ * @OSPProject Memory
+ */
+class ClockPolicy extends AbstractReplacementPolicy {
+	private int cursor = 0;
+
+	ClockPolicy(FrameTable frames) {
+		super(frames);
+	}
+
+	public String getName() {
+		return "Clock";
+	}
+
+	/**
+	 * Purpose: Clock hands out frames in a batch, so pickVictim() is not used.
+	 */
+	protected PolicyFrame pickVictim() {
+		return null;
+	}
+
+	/**
+	 * Purpose: Frees frames using the Second Chance approach. The search starts
+	 * at the policy's cursor and goes around the frame table at most twice.
+	 *
+	 * Output: Returns a free frame, or a dirty frame that must be swapped out, or
+	 * null.
+	 *
+	 * @OSPProject Memory
+	 */
+	public PolicyFrame selectVictim() {
+		PolicyFrame frame;
+		boolean isdirty = true;
+		int frameID = 0;
+		int counter = 0;
+		int size = frames.size();
+		int x = size * 2;
+		// Phase I - Batch freeing of occupied frames that are clean.
+
+		while (counter < x && frames.numFreeFrames() < wantFree) {
+			frame = frames.getFrame(cursor);
+			// each bit is read once per step; freeing a frame does not pin it and
+			// leaves it clean
+			boolean evictable = frames.isEvictable(frame);
+			boolean dirty = frame.isDirty();
+			// 1. If a page's reference bit is set, clear it and move to the next frame
+			if (frame.isReferenced()) {
+				frame.setReferenced(false);
+			}
+			// 2. Finding a clean frame; i.e. a frame containing a page and whose reference
+			// bit is not set, and the frame is not locked and not reserved and not dirty.
+			else if (evictable && !dirty) {
+				// free the frame and update the page table
+				frames.freeFrame(frame);
+			}
+			// remember the first dirty frame we could swap out
+			if (isdirty && dirty && evictable) {
+				frameID = frame.getID();
+				isdirty = false;
+			}
+			cursor = (cursor + 1) % size;
+			counter++;
+		}
+
+		/*- Phase II - Skip if the number of free frames is wantFree, otherwise do the following: */
+
+		if (frames.numFreeFrames() != wantFree) {
+
+//			If the number of free frames from Phase I is less than wantFree and we did
+//			not come across any dirty frames
+			if (frames.numFreeFrames() < wantFree && isdirty) {
+				return frames.getFreeFrame();
+			}
+			return frames.getFrame(frameID);
+
+		}
+
+		/* Phase III - Phase one managed to free "wantFree" frames */
+		return frames.getFreeFrame();
+	}
+
+	/**
+	 * Purpose: One Second Chance pass for background reclaim. Clean,
+	 * unreferenced frames are freed as in Phase I of selectVictim(); dirty,
+	 * unreferenced ones are reserved and collected for a batched writeback
+	 * instead of stopping at the first one. The pass goes around the frame
+	 * table at most twice.
+	 *
+	 * Output: The dirty victims, possibly none.
+	 *
+	 * @OSPProject Memory
+	 */
+	public List<FrameTableEntry> selectDirtyVictims(int max) {
+		List<FrameTableEntry> batch = new ArrayList<FrameTableEntry>();
+		int size = frames.size();
+		for (int counter = 0; counter < size * 2 && batch.size() < max
+				&& frames.numFreeFrames() + batch.size() < wantFree; counter++) {
+			FrameTableEntry frame = (FrameTableEntry) frames.getFrame(cursor);
+			if (frame.isReferenced()) {
+				frame.setReferenced(false);
+			} else if (frames.isEvictable(frame)) {
+				if (frame.isDirty()) {
+					Writeback.reserve(frame);
+					batch.add(frame);
+				} else {
+					frames.freeFrame(frame);
+				}
+			}
+			cursor = (cursor + 1) % size;
+		}
+		return batch;
+	}
+
+}
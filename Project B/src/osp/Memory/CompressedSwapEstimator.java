@@ -0,0 +1,135 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.Tasks.*;
+
+/**
+ * Purpose: Estimates how often a compressed swap tier in RAM (like Linux
+ * zswap) between the page fault handler and the swap files would hit. It is
+ * an estimator only: no tier exists, no disk read is saved and no frame is
+ * given up for it. CompressedSwapFrames in the [Memory] section of params.osp
+ * sets the size of the imagined tier in frames (0, the default, turns the
+ * estimator off) and CompressedPagePercent the size of a compressed page in
+ * percent of a frame (default 40, a ratio of 2.5:1).
+ *
+ * Every page written to swap would be stored in the tier as well, replacing
+ * an older copy. When the tier is full the least recently stored page would
+ * go down to the swap file. A swap-in that would find its page in the tier
+ * counts as a would-hit, and the entry is dropped. Pages of a task that ends
+ * are dropped too.
+ *
+ * A real tier is not possible in OSP. OSP has no page contents to compress,
+ * it insists on its own swap-out before a dirty frame may become clean and on
+ * its own swap-in before a page may become valid (see
+ * PageFaultHandler.standbyFrame()), so a hit could not skip the disk read.
+ * Setting frames aside for the tier would only shrink memory with nothing to
+ * gain in return. The counters tell how much disk I/O such a tier would save
+ * on this workload and how it would fill up.
+ *
+ * @OSPProject Memory
+ */
+final class CompressedSwapEstimator {
+	// pages the tier can hold; 0 when it is off
+	private static int capacity = 0;
+	private static int frames;
+	private static int pagePercent;
+	// the pages in the tier, least recently stored first
+	private static final LinkedHashMap<PageTableEntry, PageTableEntry> pages = new LinkedHashMap<PageTableEntry, PageTableEntry>();
+
+	private static long stores = 0;
+	private static long hits = 0;
+	private static long misses = 0;
+	private static long writebacks = 0;
+
+	private CompressedSwapEstimator() {
+	}
+
+	/**
+	 * Purpose: Reads the tier's keys of the [Memory] section. Called from
+	 * MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		frames = Math.max(0, MemoryConfig.getInt("CompressedSwapFrames", 0));
+		pagePercent = Math.min(100, Math.max(1, MemoryConfig.getInt("CompressedPagePercent", 40)));
+		capacity = frames * 100 / pagePercent;
+		pages.clear();
+		stores = hits = misses = writebacks = 0;
+	}
+
+	static boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Purpose: Called for every page written to swap; the page is compressed
+	 * into the tier.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void stored(PageTableEntry page) {
+		if (capacity == 0) {
+			return;
+		}
+		stores++;
+		pages.remove(page);
+		while (pages.size() >= capacity) {
+			Iterator<PageTableEntry> oldest = pages.keySet().iterator();
+			oldest.next();
+			oldest.remove();
+			writebacks++;
+		}
+		pages.put(page, page);
+	}
+
+	/**
+	 * Purpose: Called for every page read from swap. Pages never written to
+	 * swap (first touches) have nothing to find in the tier and are not
+	 * counted.
+	 *
+	 * Output: true if the page would have been in the tier, which gives it up.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean loaded(PageTableEntry page) {
+		if (capacity == 0 || !page.swapped) {
+			return false;
+		}
+		if (pages.remove(page) != null) {
+			hits++;
+			return true;
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Purpose: Drops the pages of a task that has released its memory.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void taskEnded(TaskCB task) {
+		if (capacity == 0) {
+			return;
+		}
+		Iterator<PageTableEntry> it = pages.keySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getTask() == task) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Output: The tier's statistics, for MemoryStats.
+	 */
+	static String stats() {
+		int used = (pages.size() * pagePercent + 99) / 100;
+		return "Compressed swap estimate (" + frames + " frames, " + pagePercent + "% per page): " + stores
+				+ " stored, " + hits + " would hit, " + misses + " would miss (" + MemoryStats.percent(hits, hits + misses)
+				+ "% hit rate), " + writebacks + " would be written to disk, " + pages.size() + " pages in " + used
+				+ " frames (" + String.format("%.2f", used == 0 ? 0.0 : (double) pages.size() / used) + ":1)";
+	}
+
+}
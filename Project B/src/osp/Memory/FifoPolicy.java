@@ -0,0 +1,41 @@
+package osp.Memory;
+
+/**
+ * Purpose: First in, first out replacement. Frames are queued in the order
+ * their pages were loaded and the oldest evictable one is the victim,
+ * regardless of its reference bit.
+ *
+ * @OSPProject Memory
+ */
+class FifoPolicy extends AbstractReplacementPolicy {
+	private final FrameList queue = new FrameList(frames.size());
+
+	FifoPolicy(FrameTable frames) {
+		super(frames);
+	}
+
+	public String getName() {
+		return "FIFO";
+	}
+
+	public void pageLoaded(PolicyFrame frame) {
+		// a reloaded frame goes to the back of the queue
+		queue.remove(frame.getID());
+		queue.append(frame.getID());
+	}
+
+	public void pageUnloaded(PolicyFrame frame) {
+		queue.remove(frame.getID());
+	}
+
+	protected PolicyFrame pickVictim() {
+		for (int id = queue.head(); id != FrameList.NIL; id = queue.next(id)) {
+			PolicyFrame frame = frames.getFrame(id);
+			if (frames.isEvictable(frame)) {
+				return frame;
+			}
+		}
+		return null;
+	}
+
+}
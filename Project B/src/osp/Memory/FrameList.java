@@ -0,0 +1,121 @@
+package osp.Memory;
+
+/**
+ * Purpose: An intrusive doubly linked list of frame IDs. The links live in two
+ * int arrays indexed by frame ID, so adding, removing and testing membership
+ * are constant time and never allocate. A frame can be on a given list at most
+ * once.
+ *
+ * @OSPProject Memory
+ */
+class FrameList {
+	static final int NIL = -1;
+
+	private final int[] next;
+	private final int[] prev;
+	private final boolean[] member;
+	private int head = NIL;
+	private int tail = NIL;
+	private int size = 0;
+
+	/**
+	 * Purpose: Creates an empty list for frame IDs 0 .. frames - 1.
+	 *
+	 * @OSPProject Memory
+	 */
+	FrameList(int frames) {
+		next = new int[frames];
+		prev = new int[frames];
+		member = new boolean[frames];
+	}
+
+	boolean contains(int id) {
+		return member[id];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Output: The ID at the head of the list, or NIL if it is empty.
+	 */
+	int head() {
+		return head;
+	}
+
+	/**
+	 * Output: The ID that follows id on the list, or NIL at the tail.
+	 */
+	int next(int id) {
+		return next[id];
+	}
+
+	/**
+	 * Purpose: Appends id at the tail. Does nothing if it is already listed.
+	 *
+	 * @OSPProject Memory
+	 */
+	void append(int id) {
+		if (member[id]) {
+			return;
+		}
+		next[id] = NIL;
+		prev[id] = tail;
+		if (tail == NIL) {
+			head = id;
+		} else {
+			next[tail] = id;
+		}
+		tail = id;
+		member[id] = true;
+		size++;
+	}
+
+	/**
+	 * Purpose: Inserts id at the head. Does nothing if it is already listed.
+	 *
+	 * @OSPProject Memory
+	 */
+	void push(int id) {
+		if (member[id]) {
+			return;
+		}
+		prev[id] = NIL;
+		next[id] = head;
+		if (head == NIL) {
+			tail = id;
+		} else {
+			prev[head] = id;
+		}
+		head = id;
+		member[id] = true;
+		size++;
+	}
+
+	/**
+	 * Purpose: Unlinks id. Does nothing if it is not listed.
+	 *
+	 * @OSPProject Memory
+	 */
+	void remove(int id) {
+		if (!member[id]) {
+			return;
+		}
+		if (prev[id] == NIL) {
+			head = next[id];
+		} else {
+			next[prev[id]] = next[id];
+		}
+		if (next[id] == NIL) {
+			tail = prev[id];
+		} else {
+			prev[next[id]] = prev[id];
+		}
+		next[id] = NIL;
+		prev[id] = NIL;
+		member[id] = false;
+		size--;
+	}
+
+}
@@ -0,0 +1,142 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Background reclaim of frames driven by free-frame watermarks, so
+ * that a page fault usually finds a free frame in the pool and does not have
+ * to run the replacement policy itself.
+ *
+ * Every ReclaimInterval ticks the reclaimer looks at the pool. When fewer than
+ * FreeFramesLow frames are free it asks the replacement policy for victims
+ * until FreeFramesHigh frames are free: clean victims are freed by the policy
+ * itself, dirty ones come back in batches of up to WritebackBatch frames that
+ * the reclaimer writes in swap order (see Writeback) and then frees unless
+ * they were used during the writes.
+ *
+ * The reclaimer also sets the policy's wantFree, the number of frames a page
+ * fault frees when it finds the pool empty. It follows the number of page
+ * faults per interval (smoothed) and stays between FreeFramesMin and
+ * FreeFramesHigh.
+ *
+ * @OSPProject Memory
+ */
+class FrameReclaimer implements DaemonInterface {
+	// the reclaimer, if params.osp asks for one; MemoryStats prints its counters
+	static FrameReclaimer instance = null;
+
+	private final int min;
+	private final int low;
+	private final int high;
+	// most dirty victims written in one batch
+	private final int batchSize;
+	// page faults per interval, times 4 (exponential average with weight 1/4)
+	private int faultRate4 = 0;
+	private long lastFaults = 0;
+	// true while a pass is writing; a slow pass must not overlap the next one
+	private boolean busy = false;
+	private int reclaimed = 0;
+
+	FrameReclaimer(int min, int low, int high, int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+		this.min = Math.max(1, min);
+		this.high = Math.max(this.min, high);
+		this.low = Math.min(Math.max(this.min, low), this.high);
+	}
+
+	/**
+	 * Purpose: Registers the reclaimer with the MemoryDaemon if the [Memory]
+	 * section of params.osp asks for one. Called from MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		instance = null;
+		int interval = MemoryConfig.getInt("ReclaimInterval", 0);
+		if (interval <= 0) {
+			return;
+		}
+		int size = MMU.getFrameTableSize();
+		FrameReclaimer reclaimer = new FrameReclaimer(MemoryConfig.getInt("FreeFramesMin", 1),
+				MemoryConfig.getInt("FreeFramesLow", size / 10), MemoryConfig.getInt("FreeFramesHigh", size / 5),
+				MemoryConfig.getInt("WritebackBatch", 8));
+		MMU.policy.setWantFree(reclaimer.min);
+		instance = reclaimer;
+		MemoryDaemon.add("Frame reclaimer", reclaimer, interval);
+	}
+
+	/**
+	 * Purpose: One pass of the reclaimer: retunes wantFree, then reclaims frames
+	 * up to the high watermark if the pool is below the low one.
+	 *
+	 * Inputs: - thread the daemon thread that performs the writes
+	 *
+	 * @OSPProject Memory
+	 */
+	public void unleash(ThreadCB thread) {
+		if (busy) {
+			return;
+		}
+		adaptWantFree();
+		if (PageFaultHandler.numFreeFrames() >= low) {
+			return;
+		}
+		busy = true;
+
+		for (int n = 0; n < MMU.getFrameTableSize() && PageFaultHandler.numFreeFrames() < high; n++) {
+			if (Writeback.yielding()) {
+				break;
+			}
+			int free = PageFaultHandler.numFreeFrames();
+			List<FrameTableEntry> batch = selectDirtyVictims();
+			reclaimed += PageFaultHandler.numFreeFrames() - free;
+			if (batch.isEmpty()) {
+				// the target is reached, or there is nothing left to write
+				break;
+			}
+
+			// clean the dirty victims and drop them, unless they were used meanwhile
+			reclaimed += Writeback.writeBatch(batch, thread);
+			if (thread.getStatus() == GlobalVariables.ThreadKill) {
+				break;
+			}
+		}
+		busy = false;
+	}
+
+	/**
+	 * Purpose: Runs the policy with the high watermark as its target. The
+	 * fault path's wantFree is put back before anything can suspend us.
+	 *
+	 * @OSPProject Memory
+	 */
+	private List<FrameTableEntry> selectDirtyVictims() {
+		int wantFree = MMU.policy.getWantFree();
+		MMU.policy.setWantFree(high);
+		List<FrameTableEntry> batch = MMU.policy.selectDirtyVictims(batchSize);
+		MMU.policy.setWantFree(wantFree);
+		return batch;
+	}
+
+	/**
+	 * Purpose: Sets wantFree to the smoothed number of page faults of the last
+	 * intervals, so that a burst of faults reclaims in bigger batches.
+	 *
+	 * @OSPProject Memory
+	 */
+	private void adaptWantFree() {
+		long faults = PageFaultHandler.faults;
+		faultRate4 += (int) (faults - lastFaults) - faultRate4 / 4;
+		lastFaults = faults;
+		MMU.policy.setWantFree(Math.min(high, Math.max(min, (faultRate4 + 2) / 4)));
+	}
+
+	public String toString() {
+		return "FrameReclaimer(min " + min + ", low " + low + ", high " + high + ", wantFree "
+				+ MMU.policy.getWantFree() + ", reclaimed " + reclaimed + ")";
+	}
+
+}
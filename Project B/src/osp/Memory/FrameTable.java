@@ -0,0 +1,78 @@
+package osp.Memory;
+
+import osp.Hardware.*;
+
+/**
+ * Purpose: The frames a replacement policy works on, and the free frames
+ * among them. MEMORY is the simulator's frame table, where freeing a frame
+ * goes through PageFaultHandler.freeFrame(); TraceReplay has its own.
+ *
+ * @OSPProject Memory
+ */
+interface FrameTable {
+
+	int size();
+
+	PolicyFrame getFrame(int id);
+
+	/**
+	 * Purpose: Tells whether a frame holds a page that may be evicted.
+	 */
+	boolean isEvictable(PolicyFrame frame);
+
+	int numFreeFrames();
+
+	/**
+	 * Output: A free frame, or null if there is none. The frame stays free
+	 * until the caller puts a page into it.
+	 */
+	PolicyFrame getFreeFrame();
+
+	/**
+	 * Purpose: Evicts the clean page of a frame, which tells the policy
+	 * through pageUnloaded().
+	 */
+	void freeFrame(PolicyFrame frame);
+
+	/**
+	 * Output: The current time in ticks.
+	 */
+	long now();
+
+	FrameTable MEMORY = new FrameTable() {
+		public int size() {
+			return MMU.getFrameTableSize();
+		}
+
+		public PolicyFrame getFrame(int id) {
+			return MMU.getFrame(id);
+		}
+
+		public boolean isEvictable(PolicyFrame frame) {
+			if (frame.getPage() == null) {
+				// an empty frame the scan passes goes back to the pool if OSP
+				// freed it behind our back
+				FreeFramePool.update((FrameTableEntry) frame);
+				return false;
+			}
+			return PageFaultHandler.isEvictable((FrameTableEntry) frame);
+		}
+
+		public int numFreeFrames() {
+			return PageFaultHandler.numFreeFrames();
+		}
+
+		public PolicyFrame getFreeFrame() {
+			return PageFaultHandler.getFreeFrame();
+		}
+
+		public void freeFrame(PolicyFrame frame) {
+			PageFaultHandler.freeFrame((FrameTableEntry) frame);
+		}
+
+		public long now() {
+			return HClock.get();
+		}
+	};
+
+}
@@ -4,14 +4,21 @@ package osp.Memory;
     The FrameTableEntry class contains information about a specific page
     frame of memory.
 
+    A frame holds at most one page, and pages are never shared between
+    tasks: IflFrameTableEntry keeps a single page per frame, OSP checks
+    on every swap and validation that the frame's page is the page being
+    validated, and tasks are created empty, never forked, so no two pages
+    are known to hold the same contents.
+
     @OSPProject Memory
 */
 import osp.Tasks.*;
+import osp.Hardware.*;
 import osp.Interrupts.*;
 import osp.Utilities.*;
 import osp.IFLModules.IflFrameTableEntry;
 
-public class FrameTableEntry extends IflFrameTableEntry
+public class FrameTableEntry extends IflFrameTableEntry implements PolicyFrame
 {
     /**
        The frame constructor. Must have
@@ -35,6 +42,167 @@ public class FrameTableEntry extends IflFrameTableEntry
        Feel free to add methods/fields to improve the readability of your code
     */
 
+    // reverse map: the page table whose resident set holds this frame, and
+    // the links of that set; see PageTable.addResident()
+    PageTable rmapOwner;
+    FrameTableEntry rmapNext;
+    FrameTableEntry rmapPrev;
+
+    // the clean page whose contents this free frame still holds; see
+    // unmapToStandby()
+    PageTableEntry standby;
+
+    // the working-set sampler's own reference bit, set with the reference
+    // bit on every reference and cleared only by WorkingSetQuota, so that the
+    // sampler leaves the bits of the replacement policy alone; and the last
+    // time the sampler saw it set, or the time the page was put in
+    boolean sampled;
+    long lastSeen;
+
+    // write references to the frame; Writeback compares the count across a
+    // swap-out to tell whether the page was written while it was on its way
+    long writes;
+
+    /**
+       Marks the frame dirty for a write reference and counts the write.
+
+       @OSPProject Memory
+    */
+    void written()
+    {
+        setDirty(true);
+        writes++;
+    }
+
+    /**
+       Puts a page into the frame (or empties it when page is null) and
+       keeps the free frame pool, the resident sets of the page tables
+       and the read-ahead statistics in sync. A
+       frame that gets a page is no longer on standby, and neither is the
+       page.
+
+       @OSPProject Memory
+    */
+    void map(PageTableEntry page)
+    {
+        if (page != null) {
+            dropStandby();
+            if (page.standbyFrame != null) {
+                page.standbyFrame.dropStandby();
+            }
+        }
+        if (rmapOwner != null) {
+            rmapOwner.removeResident(this);
+        }
+        if (getPage() != null && getPage() != page) {
+            ReadAhead.unmapped(getPage());
+        }
+        if (page != getPage()) {
+            // a new page does not inherit the age of the old one
+            sampled = false;
+            lastSeen = HClock.get();
+        }
+        setPage(page);
+        if (page != null && page.getTask().getPageTable() != null) {
+            page.getTask().getPageTable().addResident(this);
+        }
+        FreeFramePool.update(this);
+    }
+
+    /**
+       Empties the frame like map(null), but leaves it on standby: it stays
+       associated with its clean page until it is used again, so that a
+       page fault on that page can tell it is a minor fault and take the
+       frame back (see PageFaultHandler.standbyFrame()). The caller must
+       have written the page out if it was dirty.
+
+       @OSPProject Memory
+    */
+    void unmapToStandby()
+    {
+        PageTableEntry page = getPage();
+        if (page != null) {
+            standby = page;
+            page.standbyFrame = this;
+        }
+        map(null);
+    }
+
+    private void dropStandby()
+    {
+        if (standby != null) {
+            standby.standbyFrame = null;
+            standby = null;
+        }
+    }
+
+    /**
+       Reserves the frame for the task and keeps the free frame pool in
+       sync.
+
+       @OSPProject Memory
+    */
+    void reserve(TaskCB task)
+    {
+        setReserved(task);
+        FreeFramePool.update(this);
+    }
+
+    /**
+       Drops the task's reservation of the frame and keeps the free frame
+       pool in sync.
+
+       @OSPProject Memory
+    */
+    void unreserve(TaskCB task)
+    {
+        setUnreserved(task);
+        FreeFramePool.update(this);
+    }
+
+    /**
+       Drops the task's reservation of the frame if it still holds one,
+       and brings the resident sets and the free frame pool in line with
+       the frame whatever happened to it. Used where a thread comes back
+       from I/O killed: meanwhile OSP may have emptied the frame of the
+       thread's page or dropped the reservation itself, without going
+       through map() or unreserve().
+
+       @OSPProject Memory
+    */
+    void release(TaskCB task)
+    {
+        if (getReserved() == task) {
+            setUnreserved(task);
+        }
+        if (getPage() == null && rmapOwner != null) {
+            rmapOwner.removeResident(this);
+        }
+        FreeFramePool.update(this);
+    }
+
+    /**
+       Increments the lock count and keeps the free frame pool in sync.
+
+       @OSPProject Memory
+    */
+    void lock()
+    {
+        incrementLockCount();
+        FreeFramePool.update(this);
+    }
+
+    /**
+       Decrements the lock count and keeps the free frame pool in sync.
+
+       @OSPProject Memory
+    */
+    void unlock()
+    {
+        decrementLockCount();
+        FreeFramePool.update(this);
+    }
+
 }
 
 /*
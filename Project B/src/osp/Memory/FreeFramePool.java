@@ -0,0 +1,176 @@
+package osp.Memory;
+
+/**
+ * Purpose: Keeps track of the free frames of the frame table so that finding
+ * a free frame and counting the free frames are constant time operations. A
+ * frame is free when it holds no page, is not reserved and is not locked.
+ *
+ * The pool is an intrusive FrameList of frame IDs, handed out from the head.
+ * Frames on standby (still holding an evicted clean page) enter it at the
+ * tail, so they are reused oldest first and as late as possible; other free
+ * frames enter it at the head. The FrameTableEntry methods that
+ * change a frame's page, reservation or lock count call update().
+ *
+ * OSP also changes frames directly, without going through those methods: the
+ * disk interrupt handler unreserves the frames of a killed task, and the
+ * thread kill path empties the frame a killed thread was faulting into. Both
+ * happen while one of our threads waits for I/O on the frame, and that
+ * thread calls FrameTableEntry.release() on its way out, which puts the frame
+ * back. The replacement policies' scans put back any empty frame they pass
+ * as well (see FrameTable.MEMORY). A frame that left the pool behind our
+ * back is dropped when it reaches the head.
+ *
+ * With superpages on, the pool also counts its frames in every aligned block
+ * of Superpages.size() frames and lists the blocks that are entirely free, so
+ * that Superpages finds a contiguous run of frames in constant time.
+ *
+ * @OSPProject Memory
+ */
+final class FreeFramePool {
+	private static FrameList free;
+	// with superpages: pool frames per aligned block, and the full blocks
+	private static int[] blockFree;
+	private static FrameList fullBlocks;
+
+	private FreeFramePool() {
+	}
+
+	/**
+	 * Purpose: Builds the pool from the current state of the frame table, the
+	 * only full scan the pool makes. Called from MMU.init() once all the
+	 * frames exist.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		free = new FrameList(MMU.getFrameTableSize());
+		blockFree = null;
+		fullBlocks = null;
+		if (Superpages.isEnabled()) {
+			int blocks = MMU.getFrameTableSize() >> Superpages.order();
+			blockFree = new int[blocks + 1];
+			fullBlocks = new FrameList(blocks + 1);
+		}
+		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
+			update(MMU.getFrame(i));
+		}
+	}
+
+	/**
+	 * Purpose: Tells whether a frame is free, judging by the frame itself.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean isFree(FrameTableEntry frame) {
+		return frame.getPage() == null && !frame.isReserved() && frame.getLockCount() == 0;
+	}
+
+	/**
+	 * Purpose: Adds the frame to or removes it from the pool, depending on
+	 * whether it is free now. Must be called after every change to a frame's
+	 * page, reservation or lock count.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void update(FrameTableEntry frame) {
+		int id = frame.getID();
+		boolean listed = free.contains(id);
+		if (isFree(frame) && frame.standby != null) {
+			// keep the evicted page around as long as possible
+			free.append(id);
+		} else if (isFree(frame)) {
+			free.push(id);
+		} else {
+			free.remove(id);
+		}
+		if (listed != free.contains(id)) {
+			blockChanged(id);
+		}
+	}
+
+	/**
+	 * Purpose: Keeps the block counters in step after the frame joined or left
+	 * the pool.
+	 */
+	private static void blockChanged(int id) {
+		if (blockFree == null) {
+			return;
+		}
+		int block = id >> Superpages.order();
+		blockFree[block] += free.contains(id) ? 1 : -1;
+		if (blockFree[block] == Superpages.size()) {
+			fullBlocks.append(block);
+		} else {
+			fullBlocks.remove(block);
+		}
+	}
+
+	/**
+	 * Purpose: Finds an aligned block of Superpages.size() free frames.
+	 *
+	 * Output: The ID of the first frame of the block, or -1 if no block is
+	 * entirely free.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int firstBlock() {
+		if (fullBlocks == null) {
+			return -1;
+		}
+		while (fullBlocks.head() != FrameList.NIL) {
+			int base = fullBlocks.head() << Superpages.order();
+			int id = base;
+			while (id < base + Superpages.size() && isFree(MMU.getFrame(id))) {
+				id++;
+			}
+			if (id == base + Superpages.size()) {
+				return base;
+			}
+			// changed behind our back
+			free.remove(id);
+			blockChanged(id);
+		}
+		return -1;
+	}
+
+	/**
+	 * Purpose: Returns a free frame without taking it out of the pool; the frame
+	 * leaves the pool as soon as it is given a page, reserved or locked.
+	 *
+	 * Output: A free frame, or null if there is none.
+	 *
+	 * @OSPProject Memory
+	 */
+	static FrameTableEntry first() {
+		while (free.head() != FrameList.NIL) {
+			FrameTableEntry frame = MMU.getFrame(free.head());
+			if (isFree(frame)) {
+				return frame;
+			}
+			// changed behind our back: drop it and look further
+			free.remove(frame.getID());
+			blockChanged(frame.getID());
+		}
+		return null;
+	}
+
+	/**
+	 * Purpose: Returns the number of free frames.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int size() {
+		return free.size();
+	}
+
+	/**
+	 * Purpose: Returns the number of aligned blocks of frames that are
+	 * entirely free; 0 with superpages off.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int blockCount() {
+		return fullBlocks == null ? 0 : fullBlocks.size();
+	}
+
+}
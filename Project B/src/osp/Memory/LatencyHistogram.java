@@ -0,0 +1,58 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: A histogram of durations (simulated ticks or nanoseconds) with
+ * power-of-two buckets: bucket 0 counts durations of 0 and bucket k (k > 0)
+ * those of 2^(k-1) to 2^k - 1. Recording never allocates.
+ *
+ * @OSPProject Memory
+ */
+class LatencyHistogram {
+	private static final int BUCKETS = 32;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+
+	void record(long duration) {
+		if (duration < 0) {
+			duration = 0;
+		}
+		counts[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration))]++;
+		count++;
+		total += duration;
+		max = Math.max(max, duration);
+	}
+
+	long getCount() {
+		return count;
+	}
+
+	long getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+
+	void clear() {
+		Arrays.fill(counts, 0);
+		count = total = max = 0;
+	}
+
+	/**
+	 * Output: The count, mean and maximum, followed by the non-empty buckets as
+	 * "<upper bound>:<count>".
+	 */
+	public String toString() {
+		StringBuilder out = new StringBuilder();
+		out.append(count).append(" (mean ").append(getMean()).append(", max ").append(max).append(")");
+		for (int k = 0; k < BUCKETS; k++) {
+			if (counts[k] != 0) {
+				out.append(' ').append(k == 0 ? 0 : (1L << k) - 1).append(':').append(counts[k]);
+			}
+		}
+		return out.toString();
+	}
+
+}
@@ -13,6 +13,15 @@ import osp.Interrupts.*;
  * memory reference. It is responsible for calling the interrupt handler if a
  * page fault is required.
  * 
+ * There is no load control (taking a thrashing task out of memory until the
+ * pressure drops). Releasing a task's frames is easy, but its threads would
+ * have to be kept from faulting them back in, and this module has no place
+ * to hold them: the dispatcher belongs to the Threads module, OSP only lets a
+ * running thread be suspended, a thread that has been woken up is no longer
+ * running and so cannot take the page fault it was held before, and OSP
+ * rejects NotEnoughMemory unless every frame is locked or reserved. Without
+ * the hold, releasing the frames only adds page faults.
+ * 
  * @OSPProject Memory Authors: Abdulaziz Hasan 1555528, Mohammed Shukri 1647376
  *             Date of the Last modification: 16/4/2020
  */
@@ -24,16 +33,66 @@ public class MMU extends IflMMU {
 	 * 
 	 * @OSPProject Memory
 	 */
-	public static int Cursor;
-	public static int wantFree;
+	// page replacement policy, chosen by [Memory] ReplacementPolicy
+	static ReplacementPolicy policy;
+
+	// number of offset bits in a virtual address: page = address >> pageShift
+	static int pageShift;
+	// software TLB in front of the page table walk; null when disabled
+	static TLB tlb;
+	// when false, the TLB is flushed every time the PTBR changes
+	static boolean tlbTagged;
+	// the page table that was current on the previous reference
+	static PageTable lastPTBR;
 
 	public static void init() {
-		Cursor = 0;
-		wantFree = 1;
-
+		MemoryConfig.init();
 		for (int i = 0; i < MMU.getFrameTableSize(); i++)
 			setFrame(i, new FrameTableEntry(i));
+		Superpages.init();
+		FreeFramePool.init();
+		policy = ReplacementPolicy.forName(MemoryConfig.getString("ReplacementPolicy", "Clock"));
+
+		pageShift = getVirtualAddressBits() - getPageAddressBits();
+
+		int tlbSets = MemoryConfig.getInt("TLBSets", 0);
+		tlb = tlbSets > 0 ? new TLB(tlbSets, MemoryConfig.getInt("TLBWays", 4)) : null;
+		tlbTagged = MemoryConfig.getInt("TLBTagged", 1) != 0;
+		lastPTBR = null;
+
+		MemoryStats.init();
+		TraceRecorder.init();
+		CompressedSwapEstimator.init();
+		ReadAhead.init();
+		Writeback.init();
+		MemoryDaemon.init();
+		WorkingSetQuota.init();
+		PageCleaner.init();
+		FrameReclaimer.init();
+		MemoryDaemon.start();
+	}
 
+	/**
+	 * Purpose: Drops the cached translation of a page. Must be called whenever a
+	 * page loses its frame.
+	 * 
+	 * @OSPProject Memory
+	 */
+	static void invalidateTranslation(PageTableEntry page) {
+		if (tlb != null) {
+			tlb.invalidate(page);
+		}
+	}
+
+	/**
+	 * Purpose: Drops every cached translation of a task's page table.
+	 * 
+	 * @OSPProject Memory
+	 */
+	static void flushTranslations(PageTable pageTable) {
+		if (tlb != null) {
+			tlb.flush(pageTable.asid);
+		}
 	}
 
 	/**
@@ -58,24 +117,78 @@ public class MMU extends IflMMU {
 
 	static public PageTableEntry do_refer(int memoryAddress, int referenceType, ThreadCB thread) {
 		// Compute the page address
-		int pageAddress = memoryAddress / ((int) Math.pow(2, getVirtualAddressBits() - getPageAddressBits()));
-		PageTableEntry page = MMU.getPTBR().pages[pageAddress];
+		int pageAddress = memoryAddress >> pageShift;
+		PageTable ptbr = MMU.getPTBR();
+		long start = MemoryStats.timing ? System.nanoTime() : 0;
+		MemoryStats.references++;
+		ptbr.references++;
+		if (TraceRecorder.recording) {
+			TraceRecorder.reference(ptbr.getTask(), pageAddress, referenceType);
+		}
+
+		// Try the TLB first: a hit is always a valid page
+		if (tlb != null) {
+			if (ptbr != lastPTBR) {
+				if (!tlbTagged) {
+					tlb.flushAll();
+				}
+				lastPTBR = ptbr;
+			}
+			FrameTableEntry frame = tlb.lookup(ptbr.asid, pageAddress);
+			if (frame != null) {
+				MemoryStats.hits++;
+				frame.setReferenced(true);
+				frame.sampled = true;
+				if (referenceType == MemoryWrite) {
+					frame.written();
+				}
+				if (MemoryStats.timing) {
+					MemoryStats.hitNanos.record(System.nanoTime() - start);
+				}
+				return ptbr.pages[pageAddress];
+			}
+		}
 
-		if (page.isValid()) {
-			
-			page.getFrame().setReferenced(true);
+		PageTableEntry page = ptbr.pages[pageAddress];
+		FrameTableEntry frame = page.isValid() ? page.getFrame() : null;
+
+		if (frame != null) {
+			MemoryStats.hits++;
+			ReadAhead.used(page);
+			frame.setReferenced(true);
+			frame.sampled = true;
 			if (referenceType == MemoryWrite) {
-				page.getFrame().setDirty(true);
+				frame.written();
 
 			}
+			if (tlb != null && !Superpages.promote(tlb, ptbr, pageAddress)) {
+				tlb.insert(ptbr.asid, page, frame);
+			}
+			if (MemoryStats.timing) {
+				MemoryStats.hitNanos.record(System.nanoTime() - start);
+			}
 
 			// return page;
 		}
 		// Check if the page is invalid
 		else {
 
+			// Another thread is already bringing the page in: wait for it, with every
+			// other thread that needs the page; the fault wakes them all at once. That
+			// page fault may fail (e.g. its thread is killed), so look again after
+			// waking up
+			if (page.getValidatingThread() != null && page.getValidatingThread() != thread) {
+				MemoryStats.joinedFaults++;
+			}
+			while (!page.isValid() && page.getValidatingThread() != null && page.getValidatingThread() != thread
+					&& thread.getStatus() != ThreadKill) {
+
+				// Suspend the thread
+				thread.suspend(page);
+			}
+
 			// Check if validation thread of the page is null
-			if (page.getValidatingThread() == null) {
+			if (!page.isValid() && page.getValidatingThread() == null && thread.getStatus() != ThreadKill) {
 
 				InterruptVector.setReferenceType(referenceType);
 				InterruptVector.setPage(page);
@@ -83,37 +196,20 @@ public class MMU extends IflMMU {
 				CPU.interrupt(PageFault);
 				// due to warning 1:
 				ThreadCB.dispatch();
-
-				if (thread.getStatus() != ThreadKill) {
-
-					// Set the page's frame as referenced.
-					page.getFrame().setReferenced(true);
-
-					// Set the frame dirty bit to true (dirty) if the reference type is
-					// "MemoryWrite".
-					if (referenceType == MemoryWrite) {
-						page.getFrame().setDirty(true);
-					}
-				}
 			}
 
-			else {
-
-				// Suspend the thread
-				thread.suspend(page);
-
-				
+			// The page may still be invalid if there was not enough memory
+			if (thread.getStatus() != ThreadKill && page.isValid()) {
 
-				if (thread.getStatus() != ThreadKill) {
+				// Set the page's frame as referenced.
+				ReadAhead.used(page);
+				page.getFrame().setReferenced(true);
+				page.getFrame().sampled = true;
 
-					// Set the page's frame as referenced.
-					page.getFrame().setReferenced(true);
-
-					// Set the frame dirty bit to true (dirty) if the reference type is
-					// "MemoryWrite".
-					if (referenceType == MemoryWrite) {
-						page.getFrame().setDirty(true);
-					}
+				// Set the frame dirty bit to true (dirty) if the reference type is
+				// "MemoryWrite".
+				if (referenceType == MemoryWrite) {
+					page.getFrame().written();
 				}
 			}
 
@@ -130,7 +226,11 @@ public class MMU extends IflMMU {
 	 * @OSPProject Memory
 	 */
 	public static void atError() {
-
+		if (tlb != null) {
+			MyOut.print("osp.Memory.MMU", tlb.toString());
+		}
+		MyOut.print("osp.Memory.MMU", ReadAhead.stats());
+		MemoryStats.print("osp.Memory.MMU");
 	}
 
 	/**
@@ -142,7 +242,11 @@ public class MMU extends IflMMU {
 	 * @OSPProject Memory
 	 */
 	public static void atWarning() {
-
+		if (tlb != null) {
+			MyOut.print("osp.Memory.MMU", tlb.toString());
+		}
+		MyOut.print("osp.Memory.MMU", ReadAhead.stats());
+		MemoryStats.print("osp.Memory.MMU");
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: Times the hot paths of the memory module outside the simulator:
+ * ReplacementPolicy.selectVictim(), FrameTable.getFreeFrame() and
+ * TLB.lookup(), over memories of a range of sizes.
+ *
+ * Usage: java -cp OSP.jar:classes osp.Memory.MemoryBenchmark [frames]
+ * [dirty%] [referenced%] [policies] [faults]
+ *
+ * frames is a comma separated list of frame counts (default
+ * 32,1024,32768,1048576), dirty% and referenced% the share of references
+ * that dirty and reference a frame (default 30 and 50), policies a comma
+ * separated list of ReplacementPolicy names (default
+ * FIFO,Clock,LRU,NRU,WSClock,CAR) and faults the number of page faults timed
+ * per policy and frame count (default 200000). A policy whose victims take
+ * more than BUDGET nanoseconds in all stops early; the faults column gives
+ * the number timed.
+ *
+ * The policies run on TraceReplay's frame table, whose free list is a
+ * FrameList like the FreeFramePool. getFreeFrame is timed while the memory
+ * fills up, every frame being loaded with a page. Then every fault first
+ * references one resident frame at random, then has the policy select a
+ * victim and loads a new page into it; both the touched frame and the new
+ * page get their reference and dirty bits by the given shares. A dirty
+ * victim is unloaded as if it had been written. No PageCleaner runs, so the
+ * frames dirtied by hits pile up, and a policy that passes over dirty frames
+ * (Clock, WSClock) or compares every frame (LRU, NRU) may take a sweep of
+ * the whole table per victim. The TLB has TLBWays 4 and
+ * enough sets to hold a translation of every frame; half of the lookups
+ * miss. Times are in nanoseconds per call and include one System.nanoTime()
+ * call; a first untimed round warms up the JIT.
+ *
+ * @OSPProject Memory
+ */
+final class MemoryBenchmark {
+	static final String USAGE = "Usage: java osp.Memory.MemoryBenchmark [frames] [dirty%] [referenced%] [policies] [faults]";
+	static final String DEFAULT_FRAMES = "32,1024,32768,1048576";
+	static final int TLB_WAYS = 4;
+	static final int TLB_LOOKUPS = 1000000;
+	static final long BUDGET = 2000000000L;
+
+	private final int dirty;
+	private final int referenced;
+	private final int faults;
+	private final Random random = new Random(1);
+
+	MemoryBenchmark(int dirty, int referenced, int faults) {
+		this.dirty = dirty;
+		this.referenced = referenced;
+		this.faults = faults;
+	}
+
+	private boolean chance(int percent) {
+		return random.nextInt(100) < percent;
+	}
+
+	/**
+	 * Purpose: Times one policy on a memory of count frames.
+	 *
+	 * Output: The nanoseconds per getFreeFrame() and per selectVictim() call,
+	 * the number of faults timed and the number of dirty victims.
+	 */
+	long[] policy(String name, int count) {
+		// twice as many pages as frames, loaded in turn, so a new page is
+		// never resident for long
+		int pageCount = 2 * count;
+		TraceReplay.Frames memory = new TraceReplay.Frames(count, pageCount);
+		ReplacementPolicy policy = ReplacementPolicy.forName(name, memory, WSClockPolicy.DEFAULT_TAU);
+		memory.policy = policy;
+		int next = 0;
+
+		long freeNanos = 0;
+		for (int i = 0; i < count; i++) {
+			long start = System.nanoTime();
+			ReplayFrame frame = (ReplayFrame) memory.getFreeFrame();
+			freeNanos += System.nanoTime() - start;
+			memory.free.remove(frame.id);
+			load(memory, policy, frame, next++);
+		}
+
+		long victimNanos = 0;
+		long dirtyVictims = 0;
+		int i;
+		for (i = 0; i < faults && victimNanos < BUDGET; i++) {
+			memory.now = i;
+			ReplayFrame touched = memory.frames[random.nextInt(count)];
+			touched.referenced |= chance(referenced);
+			touched.dirty |= chance(dirty);
+
+			long start = System.nanoTime();
+			ReplayFrame frame = (ReplayFrame) policy.selectVictim();
+			victimNanos += System.nanoTime() - start;
+			if (frame == null) {
+				continue;
+			}
+			if (frame.page != null) {
+				dirtyVictims++;
+				memory.unload(frame);
+			}
+			memory.free.remove(frame.id);
+			while (memory.frameOf[next % pageCount] >= 0) {
+				next++;
+			}
+			load(memory, policy, frame, next++ % pageCount);
+		}
+		return new long[] { freeNanos / count, victimNanos / i, i, dirtyVictims };
+	}
+
+	private void load(TraceReplay.Frames memory, ReplacementPolicy policy, ReplayFrame frame, int page) {
+		frame.page = page;
+		memory.frameOf[page] = frame.id;
+		policy.pageLoaded(frame);
+		frame.referenced = chance(referenced);
+		frame.dirty = chance(dirty);
+	}
+
+	/**
+	 * Purpose: Times TLB.lookup() on a TLB that holds a translation of every
+	 * one of count frames.
+	 *
+	 * Output: The nanoseconds per lookup.
+	 */
+	long tlb(int count) {
+		TLB tlb = new TLB(Math.max(1, count / TLB_WAYS), TLB_WAYS);
+		FrameTableEntry[] frames = new FrameTableEntry[count];
+		for (int i = 0; i < count; i++) {
+			frames[i] = new FrameTableEntry(i);
+			tlb.insert(0, i, null, frames[i]);
+		}
+		int[] pages = new int[TLB_LOOKUPS];
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = random.nextInt(2 * count);
+		}
+		long start = System.nanoTime();
+		for (int page : pages) {
+			tlb.lookup(0, page);
+		}
+		return (System.nanoTime() - start) / pages.length;
+	}
+
+	public static void main(String[] args) {
+		if (args.length > 5) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		int[] counts;
+		int dirty, referenced, faults;
+		try {
+			counts = Arrays.stream((args.length > 0 && args[0].length() > 0 ? args[0] : DEFAULT_FRAMES).split(","))
+					.mapToInt(count -> Integer.parseInt(count.trim())).toArray();
+			dirty = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+			referenced = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+			faults = args.length > 4 ? Integer.parseInt(args[4]) : 200000;
+		} catch (NumberFormatException e) {
+			counts = null;
+			dirty = referenced = faults = -1;
+		}
+		String[] policies = (args.length > 3 && args[3].length() > 0 ? args[3] : TraceReplay.DEFAULT_POLICIES).split(",");
+		boolean valid = counts != null && dirty >= 0 && dirty <= 100 && referenced >= 0 && referenced <= 100 && faults >= 1;
+		for (int i = 0; valid && i < counts.length; i++) {
+			valid = counts[i] >= 1;
+		}
+		for (int i = 0; valid && i < policies.length; i++) {
+			valid = ReplacementPolicy.forName(policies[i].trim(), new TraceReplay.Frames(1, 1), WSClockPolicy.DEFAULT_TAU) != null;
+		}
+		if (!valid) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		// a first untimed round, so that the timed ones run compiled code
+		MemoryBenchmark warmup = new MemoryBenchmark(dirty, referenced, faults);
+		for (String name : policies) {
+			warmup.policy(name.trim(), 1024);
+		}
+		warmup.tlb(1024);
+
+		MemoryBenchmark benchmark = new MemoryBenchmark(dirty, referenced, faults);
+		System.out.println("dirty " + dirty + "%, referenced " + referenced + "%, ns per call");
+		System.out.printf("%-8s %9s %13s %13s %9s %13s%n", "policy", "frames", "getFreeFrame", "selectVictim", "faults", "dirty victims");
+		for (int count : counts) {
+			for (String name : policies) {
+				long[] times = benchmark.policy(name.trim(), count);
+				System.out.printf("%-8s %9d %13d %13d %9d %13d%n", name.trim(), count, times[0], times[1], times[2], times[3]);
+			}
+			System.out.printf("%-8s %9d %13s %13d%n", "TLB", count, "lookup", benchmark.tlb(count));
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package osp.Memory;
+
+import java.io.*;
+import java.util.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Reads the optional tuning keys of the memory module from the
+ * [Memory] section of the simulation parameter file (Misc/params.osp unless
+ * OSP was started with -paramFile). Every key has a default, so a parameter
+ * file that does not mention a key behaves exactly as before the key was
+ * introduced.
+ *
+ * OSP offers no public way to read its parameters or to learn which file it
+ * loaded, so init() finds the -paramFile argument of the command line the
+ * simulator was started with and reads that file here, once per simulation
+ * run. Lines are "Key value" pairs under "[Section]" headers; anything after
+ * a '#' is a comment.
+ *
+ * @OSPProject Memory
+ */
+final class MemoryConfig {
+
+	static final String SECTION = "Memory";
+
+	// OSP's own default parameter file, relative to the directory it runs in
+	static final String DEFAULT_FILE = "Misc" + File.separator + "params.osp";
+
+	// the keys of every section, by "section.key"
+	private static Map<String, String> values;
+
+	private MemoryConfig() {
+	}
+
+	/**
+	 * Purpose: Reads the parameter file OSP loaded. Called first thing from
+	 * MMU.init(), so every run sees the file as it is when the run starts.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		values = read(new File(parameterFile()));
+	}
+
+	/**
+	 * Purpose: Finds the parameter file OSP was told to use.
+	 *
+	 * Output: The argument after -paramFile on the command line, or
+	 * DEFAULT_FILE if there is none.
+	 *
+	 * @OSPProject Memory
+	 */
+	static String parameterFile() {
+		String[] args = ProcessHandle.current().info().arguments().orElse(new String[0]);
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-paramFile")) {
+				return args[i + 1];
+			}
+		}
+		return DEFAULT_FILE;
+	}
+
+	/**
+	 * Purpose: Returns the raw value of a key of the given section.
+	 *
+	 * Output: The value, or null if the key (or the parameter file) is missing.
+	 *
+	 * @OSPProject Memory
+	 */
+	static String get(String section, String key) {
+		if (values == null) {
+			init();
+		}
+		return values.get(section + "." + key);
+	}
+
+	/**
+	 * Purpose: Reads every section of a parameter file.
+	 *
+	 * Output: The values by "section.key"; empty if the file cannot be read.
+	 *
+	 * @OSPProject Memory
+	 */
+	private static Map<String, String> read(File file) {
+		Map<String, String> map = new HashMap<String, String>();
+		String section = "";
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				int comment = line.indexOf('#');
+				line = (comment >= 0 ? line.substring(0, comment) : line).trim();
+				if (line.startsWith("[") && line.endsWith("]")) {
+					section = line.substring(1, line.length() - 1).trim();
+				} else if (line.length() > 0) {
+					String[] pair = line.split("\\s+", 2);
+					map.put(section + "." + pair[0], pair.length > 1 ? pair[1] : "");
+				}
+			}
+		} catch (IOException e) {
+			MyOut.warning("osp.Memory.MemoryConfig", "cannot read " + file + ", using the defaults");
+		}
+		return map;
+	}
+
+	/**
+	 * Purpose: Returns a [Memory] key as a string, or def if it is not set.
+	 *
+	 * @OSPProject Memory
+	 */
+	static String getString(String key, String def) {
+		String value = get(SECTION, key);
+		if (value == null || value.trim().length() == 0) {
+			return def;
+		}
+		return value.trim();
+	}
+
+	/**
+	 * Purpose: Returns a [Memory] key as an integer, or def if it is not set or
+	 * is not a number.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int getInt(String key, int def) {
+		return getInt(SECTION, key, def);
+	}
+
+	/**
+	 * Purpose: Returns a key of any section as an integer, or def if it is not
+	 * set or is not a number.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int getInt(String section, String key, int def) {
+		String value = get(section, key);
+		if (value == null) {
+			return def;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			MyOut.warning("osp.Memory.MemoryConfig",
+					"[" + section + "] " + key + " is not a number: " + value + ", using " + def);
+			return def;
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.Hardware.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Runs the background work of the memory module (PageCleaner,
+ * FrameReclaimer, the WorkingSetQuota sampler) from a single OSP daemon.
+ *
+ * OSP starts a new thread for every wake-up of a daemon, and its tables have
+ * room for 1800 threads over a whole simulation, workload included. One
+ * daemon per job would let a few short intervals use them up, and OSP then
+ * fails with an ArrayIndexOutOfBoundsException. So the daemon wakes up at
+ * the shortest interval asked for, and at most MAX_WAKEUPS times per run: the
+ * shortest interval is raised to SimulationLength / MAX_WAKEUPS ticks if it
+ * is below that, with a warning. On every wake-up each job whose interval
+ * has passed runs, in the order the jobs were added; a job keeps its average
+ * interval, but runs at the daemon's wake-ups.
+ *
+ * @OSPProject Memory
+ */
+final class MemoryDaemon implements DaemonInterface {
+	// wake-ups per run, leaving the rest of OSP's 1800 threads to the workload
+	static final int MAX_WAKEUPS = 1000;
+
+	// the jobs of the current run, their intervals and when each is due next
+	private static final List<DaemonInterface> jobs = new ArrayList<DaemonInterface>();
+	private static final List<String> names = new ArrayList<String>();
+	private static long[] intervals;
+	private static long[] due;
+
+	private MemoryDaemon() {
+	}
+
+	/**
+	 * Purpose: Forgets the jobs of the previous run. Called from MMU.init()
+	 * before the jobs are added.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		jobs.clear();
+		names.clear();
+		intervals = new long[0];
+		due = new long[0];
+	}
+
+	/**
+	 * Purpose: Adds a job that is to run every interval ticks.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void add(String name, DaemonInterface job, int interval) {
+		jobs.add(job);
+		names.add(name);
+		intervals = Arrays.copyOf(intervals, jobs.size());
+		due = Arrays.copyOf(due, jobs.size());
+		intervals[jobs.size() - 1] = Math.max(1, interval);
+	}
+
+	/**
+	 * Purpose: Creates the OSP daemon if any job was added. Called from
+	 * MMU.init() after the jobs are added.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void start() {
+		if (jobs.isEmpty()) {
+			return;
+		}
+		long shortest = Long.MAX_VALUE;
+		for (long interval : intervals) {
+			shortest = Math.min(shortest, interval);
+		}
+		long length = MemoryConfig.getInt("General", "SimulationLength", 0);
+		long minimum = (length + MAX_WAKEUPS - 1) / MAX_WAKEUPS;
+		if (shortest < minimum) {
+			MyOut.warning("osp.Memory.MemoryDaemon", "background interval " + shortest + " raised to " + minimum
+					+ " ticks (SimulationLength / " + MAX_WAKEUPS + "), OSP runs out of threads otherwise");
+			shortest = minimum;
+		}
+		long now = HClock.get();
+		for (int i = 0; i < jobs.size(); i++) {
+			intervals[i] = Math.max(intervals[i], shortest);
+			due[i] = now + intervals[i];
+		}
+		Daemon.create(names.size() == 1 ? names.get(0) : "Memory daemon", new MemoryDaemon(), (int) shortest);
+	}
+
+	/**
+	 * Purpose: Runs the jobs that are due. A job may suspend the thread for
+	 * its writes; the jobs after it run once it is back.
+	 *
+	 * @OSPProject Memory
+	 */
+	public void unleash(ThreadCB thread) {
+		for (int i = 0; i < jobs.size(); i++) {
+			if (thread.getStatus() == GlobalVariables.ThreadKill) {
+				return;
+			}
+			if (HClock.get() >= due[i]) {
+				due[i] += intervals[i];
+				jobs.get(i).unleash(thread);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Tasks.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Counters of the memory module, printed by MMU.atError() and
+ * MMU.atWarning() and, with MemoryStatsSnapshots 1 in the [Memory] section of
+ * params.osp, by a daemon at each of the NumberOfSnapshots snapshots of the
+ * simulation ([General] section).
+ *
+ * The global counters are plain static fields and the per-task ones live in
+ * the PageTable, so that MMU.do_refer() can count without allocating. Page
+ * faults themselves are counted by PageFaultHandler, which also records the
+ * time each successful fault took, from the interrupt to the page becoming
+ * valid, in one histogram for minor and one for major faults.
+ *
+ * With MemoryTiming 1, the hot paths are also timed in wall-clock
+ * nanoseconds: references that hit (without a page fault) in MMU.do_refer(),
+ * and the replacement policy's selectVictim() in the fault handler. Runs of
+ * the same params.osp before and after a change to the lookup or the
+ * replacement code give comparable numbers. Timing is off by default because
+ * System.nanoTime() costs about as much as a TLB hit.
+ *
+ * @OSPProject Memory
+ */
+class MemoryStats implements DaemonInterface {
+	// memory references, and those that found their page valid
+	static long references = 0;
+	static long hits = 0;
+	// pages read from and written to swap, by any part of the module
+	static long swapIns = 0;
+	static long swapOuts = 0;
+	// victims the fault handler had to write out before reusing their frame
+	static long dirtyEvictions = 0;
+	// faults that returned NotEnoughMemory, and faults whose thread was killed
+	static long notEnoughMemory = 0;
+	static long killedInFault = 0;
+	// references and I/O locks that found a fault on their page in flight and
+	// waited for it instead of faulting again
+	static long joinedFaults = 0;
+
+	static final LatencyHistogram minorFaultTicks = new LatencyHistogram();
+	static final LatencyHistogram majorFaultTicks = new LatencyHistogram();
+
+	// wall-clock timing of the hot paths, see MemoryTiming
+	static boolean timing = false;
+	static final LatencyHistogram hitNanos = new LatencyHistogram();
+	static final LatencyHistogram victimNanos = new LatencyHistogram();
+
+	// page tables of the tasks alive, in creation order
+	private static final List<PageTable> tasks = new ArrayList<PageTable>();
+
+	/**
+	 * Purpose: Clears the counters and registers the snapshot daemon if the
+	 * [Memory] section of params.osp asks for it. Called from MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		references = hits = swapIns = swapOuts = dirtyEvictions = 0;
+		notEnoughMemory = killedInFault = joinedFaults = 0;
+		minorFaultTicks.clear();
+		majorFaultTicks.clear();
+		hitNanos.clear();
+		victimNanos.clear();
+		tasks.clear();
+		timing = MemoryConfig.getInt("MemoryTiming", 0) != 0;
+
+		int snapshots = MemoryConfig.getInt("General", "NumberOfSnapshots", 0);
+		if (MemoryConfig.getInt("MemoryStatsSnapshots", 0) == 0 || snapshots <= 0) {
+			return;
+		}
+		int length = MemoryConfig.getInt("General", "SimulationLength", 0);
+		Daemon.create("Memory statistics", new MemoryStats(), Math.max(1, length / snapshots));
+	}
+
+	/**
+	 * Purpose: Called by the PageTable constructor.
+	 */
+	static void taskCreated(PageTable pageTable) {
+		tasks.add(pageTable);
+	}
+
+	/**
+	 * Purpose: Called by PageTable.do_deallocateMemory(); the task is no longer
+	 * listed.
+	 */
+	static void taskEnded(PageTable pageTable) {
+		tasks.remove(pageTable);
+	}
+
+	/**
+	 * Purpose: Counts a page read from swap, for the whole module and for the
+	 * page's task, and looks it up in the compressed swap tier.
+	 */
+	static void swappedIn(PageTableEntry page) {
+		swapIns++;
+		CompressedSwapEstimator.loaded(page);
+		PageTable pageTable = page.getTask().getPageTable();
+		if (pageTable != null) {
+			pageTable.swapIns++;
+		}
+	}
+
+	/**
+	 * Purpose: Counts a page written to swap, for the whole module and for the
+	 * page's task, and stores it in the compressed swap tier.
+	 */
+	static void swappedOut(PageTableEntry page) {
+		swapOuts++;
+		CompressedSwapEstimator.stored(page);
+		PageTable pageTable = page.getTask().getPageTable();
+		if (pageTable != null) {
+			pageTable.swapOuts++;
+		}
+	}
+
+	/**
+	 * Purpose: Records the service time of a fault that made its page valid.
+	 */
+	static void faultServed(PageTableEntry page, boolean minor, long ticks) {
+		(minor ? minorFaultTicks : majorFaultTicks).record(ticks);
+		PageTable pageTable = page.getTask().getPageTable();
+		if (pageTable != null) {
+			pageTable.faultTicks += ticks;
+		}
+	}
+
+	/**
+	 * Purpose: Prints a snapshot of the counters.
+	 */
+	public void unleash(ThreadCB thread) {
+		print("osp.Memory.MemoryStats");
+	}
+
+	/**
+	 * Purpose: Prints the counters, one line per subject, then one line per
+	 * task alive.
+	 *
+	 * Inputs: - source the name OSP shows as the origin of the lines
+	 *
+	 * @OSPProject Memory
+	 */
+	static void print(String source) {
+		MyOut.print(source, "References " + references + ", hits " + hits + " (" + percent(hits, references) + "%)");
+		MyOut.print(source, "Page faults " + PageFaultHandler.faults + " (minor " + PageFaultHandler.minorFaults
+				+ ", major " + PageFaultHandler.majorFaults + "), first touches " + PageFaultHandler.firstTouches
+				+ ", NotEnoughMemory " + notEnoughMemory + ", killed " + killedInFault + ", joined in flight "
+				+ joinedFaults);
+		MyOut.print(source, "Swap-ins " + swapIns + ", swap-outs " + swapOuts + ", dirty evictions " + dirtyEvictions);
+		if (CompressedSwapEstimator.isEnabled()) {
+			MyOut.print(source, CompressedSwapEstimator.stats());
+		}
+		if (Superpages.isEnabled()) {
+			MyOut.print(source, Superpages.stats());
+		}
+		for (Object daemon : new Object[] { PageCleaner.instance, FrameReclaimer.instance, WorkingSetQuota.instance }) {
+			if (daemon != null) {
+				MyOut.print(source, daemon.toString());
+			}
+		}
+		if (PageCleaner.instance != null || FrameReclaimer.instance != null) {
+			MyOut.print(source, Writeback.stats());
+		}
+		MyOut.print(source, "Minor fault ticks " + minorFaultTicks);
+		MyOut.print(source, "Major fault ticks " + majorFaultTicks);
+		if (timing) {
+			MyOut.print(source, "Reference hit ns " + hitNanos);
+			MyOut.print(source, MMU.policy.getName() + " selectVictim ns " + victimNanos);
+		}
+		for (PageTable pageTable : tasks) {
+			MyOut.print(source, "Task " + pageTable.getTask().getID() + ": references " + pageTable.references
+					+ ", faults " + pageTable.faults + " taking " + pageTable.faultTicks + " ticks, swap-ins "
+					+ pageTable.swapIns + ", swap-outs " + pageTable.swapOuts + ", resident "
+					+ pageTable.getResidentCount());
+		}
+	}
+
+	static long percent(long part, long whole) {
+		return whole == 0 ? 0 : 100 * part / whole;
+	}
+
+}
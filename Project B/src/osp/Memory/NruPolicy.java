@@ -0,0 +1,54 @@
+package osp.Memory;
+
+/**
+ * Purpose: Not recently used replacement. Evictable frames fall into four
+ * classes by their reference and dirty bits (0: not referenced, clean; 1: not
+ * referenced, dirty; 2: referenced, clean; 3: referenced, dirty) and the
+ * victim is taken from the lowest non-empty class. The search starts where
+ * the previous one stopped so the frames of a class take turns. The reference
+ * bits are cleared after every selection, so "recently" means since the last
+ * page replacement.
+ *
+ * @OSPProject Memory
+ */
+class NruPolicy extends AbstractReplacementPolicy {
+	private int cursor = 0;
+
+	NruPolicy(FrameTable frames) {
+		super(frames);
+	}
+
+	public String getName() {
+		return "NRU";
+	}
+
+	public PolicyFrame selectVictim() {
+		PolicyFrame frame = super.selectVictim();
+		for (int i = 0; i < frames.size(); i++) {
+			frames.getFrame(i).setReferenced(false);
+		}
+		return frame;
+	}
+
+	protected PolicyFrame pickVictim() {
+		int size = frames.size();
+		PolicyFrame victim = null;
+		int victimClass = 4;
+		for (int n = 0; n < size && victimClass > 0; n++) {
+			PolicyFrame frame = frames.getFrame((cursor + n) % size);
+			if (!frames.isEvictable(frame)) {
+				continue;
+			}
+			int frameClass = (frame.isReferenced() ? 2 : 0) + (frame.isDirty() ? 1 : 0);
+			if (frameClass < victimClass) {
+				victim = frame;
+				victimClass = frameClass;
+			}
+		}
+		if (victim != null) {
+			cursor = (victim.getID() + 1) % size;
+		}
+		return victim;
+	}
+
+}
@@ -0,0 +1,111 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: Belady's MIN for TraceReplay: the victim is the page whose next
+ * reference is furthest in the future, or that is never referenced again.
+ * It looks ahead in the trace, so it has no counterpart in the simulator; it
+ * is the lower bound for the other policies. The next reference of every
+ * record comes from TraceReplay.nextUse(), and the frames are kept in a
+ * max-heap on the next reference of their page, so a reference and a victim
+ * selection cost O(log frames).
+ *
+ * @OSPProject Memory
+ */
+class OptPolicy extends AbstractReplacementPolicy {
+	private final int[] nextUse;
+	// per frame: the position of the next reference to its page
+	private final int[] next = new int[frames.size()];
+	// heap of frame IDs, the furthest next reference at the top, and the
+	// position of each frame in it (-1 if not in the heap)
+	private final int[] heap = new int[frames.size()];
+	private final int[] index = new int[frames.size()];
+	private int heapSize = 0;
+
+	OptPolicy(FrameTable frames, int[] nextUse) {
+		super(frames);
+		this.nextUse = nextUse;
+		Arrays.fill(index, -1);
+	}
+
+	public String getName() {
+		return "OPT";
+	}
+
+	/**
+	 * Purpose: Called for every reference to a page in memory, including the
+	 * reference that faulted, after pageLoaded().
+	 *
+	 * Inputs: - position the index of the reference in the trace
+	 */
+	void pageReferenced(PolicyFrame frame, int position) {
+		int id = frame.getID();
+		next[id] = nextUse[position];
+		if (index[id] < 0) {
+			heap[heapSize] = id;
+			index[id] = heapSize++;
+			up(index[id]);
+		} else {
+			// a reference only moves the next use later, which raises the
+			// frame's key in the max-heap
+			up(index[id]);
+		}
+	}
+
+	public void pageUnloaded(PolicyFrame frame) {
+		int at = index[frame.getID()];
+		if (at < 0) {
+			return;
+		}
+		index[frame.getID()] = -1;
+		heapSize--;
+		if (at < heapSize) {
+			heap[at] = heap[heapSize];
+			index[heap[at]] = at;
+			down(at);
+			up(at);
+		}
+	}
+
+	protected PolicyFrame pickVictim() {
+		return heapSize == 0 ? null : frames.getFrame(heap[0]);
+	}
+
+	private void up(int at) {
+		while (at > 0) {
+			int parent = (at - 1) / 2;
+			if (next[heap[parent]] >= next[heap[at]]) {
+				break;
+			}
+			swap(at, parent);
+			at = parent;
+		}
+	}
+
+	private void down(int at) {
+		while (true) {
+			int child = 2 * at + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && next[heap[child + 1]] > next[heap[child]]) {
+				child++;
+			}
+			if (next[heap[at]] >= next[heap[child]]) {
+				break;
+			}
+			swap(at, child);
+			at = child;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int id = heap[a];
+		heap[a] = heap[b];
+		heap[b] = id;
+		index[heap[a]] = a;
+		index[heap[b]] = b;
+	}
+
+}
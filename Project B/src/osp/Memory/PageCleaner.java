@@ -0,0 +1,132 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Tasks.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: A background page cleaner. Every CleanerInterval ticks it looks at
+ * the next CleanerScanRate frames of the frame table and writes the pages that
+ * are dirty but have not been referenced lately to swap, so that the
+ * replacement policy usually finds clean victims and a page fault costs one
+ * swap-in instead of a swap-out followed by a swap-in. The cleaner only runs
+ * while more than CleanerDirtyRatio percent of the frames are dirty.
+ *
+ * The dirty bit is cleared once the write has completed. The frame is
+ * reserved for the page's task during the write so that it cannot be given to
+ * another page under the I/O.
+ *
+ * @OSPProject Memory
+ */
+class PageCleaner implements DaemonInterface {
+	// the cleaner, if params.osp asks for one; MemoryStats prints its counters
+	static PageCleaner instance = null;
+
+	// frames examined per wake-up
+	private final int scanRate;
+	// percentage of dirty frames below which the cleaner does nothing
+	private final int dirtyRatio;
+	private int cursor = 0;
+	// true while a pass is writing; a slow pass must not overlap the next one
+	private boolean busy = false;
+	private int written = 0;
+
+	PageCleaner(int scanRate, int dirtyRatio) {
+		this.scanRate = Math.max(1, scanRate);
+		this.dirtyRatio = dirtyRatio;
+	}
+
+	/**
+	 * Purpose: Registers the cleaner with the MemoryDaemon if the [Memory]
+	 * section of params.osp asks for one. Called from MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		instance = null;
+		int interval = MemoryConfig.getInt("CleanerInterval", 0);
+		if (interval <= 0) {
+			return;
+		}
+		PageCleaner cleaner = new PageCleaner(MemoryConfig.getInt("CleanerScanRate", MMU.getFrameTableSize() / 4),
+				MemoryConfig.getInt("CleanerDirtyRatio", 20));
+		instance = cleaner;
+		MemoryDaemon.add("Page cleaner", cleaner, interval);
+	}
+
+	/**
+	 * Purpose: One pass of the cleaner. Picks the candidates first and writes
+	 * them afterwards, in swap order, because every write suspends the daemon
+	 * thread and the frames may change meanwhile; each candidate is checked
+	 * again right before its write.
+	 *
+	 * Inputs: - thread the daemon thread that performs the writes
+	 *
+	 * @OSPProject Memory
+	 */
+	public void unleash(ThreadCB thread) {
+		if (busy || dirtyPercentage() <= dirtyRatio) {
+			return;
+		}
+		busy = true;
+
+		int size = MMU.getFrameTableSize();
+		ArrayList<FrameTableEntry> candidates = new ArrayList<FrameTableEntry>();
+		for (int n = 0; n < Math.min(scanRate, size); n++) {
+			FrameTableEntry frame = MMU.getFrame(cursor);
+			cursor = (cursor + 1) % size;
+			if (isCandidate(frame)) {
+				candidates.add(frame);
+			}
+		}
+		Collections.sort(candidates, Writeback.SWAP_ORDER);
+
+		for (FrameTableEntry frame : candidates) {
+			if (!isCandidate(frame) || thread.getStatus() == GlobalVariables.ThreadKill) {
+				continue;
+			}
+			if (Writeback.yielding()) {
+				break;
+			}
+			if (Writeback.write(frame, thread)) {
+				written++;
+			}
+		}
+		busy = false;
+	}
+
+	/**
+	 * Purpose: Tells whether a frame holds a valid, dirty and unreferenced page
+	 * that nobody else is working on.
+	 *
+	 * @OSPProject Memory
+	 */
+	private static boolean isCandidate(FrameTableEntry frame) {
+		PageTableEntry page = frame.getPage();
+		return PageFaultHandler.isEvictable(frame) && frame.isDirty() && !frame.isReferenced() && page.isValid()
+				&& page.getValidatingThread() == null && page.getTask().getStatus() != GlobalVariables.TaskTerm;
+	}
+
+	/**
+	 * Purpose: Returns the percentage of frames that hold a dirty page.
+	 *
+	 * @OSPProject Memory
+	 */
+	private static int dirtyPercentage() {
+		int dirty = 0;
+		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
+			FrameTableEntry frame = MMU.getFrame(i);
+			if (frame.getPage() != null && frame.isDirty()) {
+				dirty++;
+			}
+		}
+		return 100 * dirty / MMU.getFrameTableSize();
+	}
+
+	public String toString() {
+		return "PageCleaner(scan " + scanRate + ", dirty ratio " + dirtyRatio + "%, written " + written + ")";
+	}
+
+}
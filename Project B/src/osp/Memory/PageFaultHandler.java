@@ -22,6 +22,20 @@ import osp.IFLModules.*;
  *             the Last modification: 16/4/2020
  */
 public class PageFaultHandler extends IflPageFaultHandler {
+	// number of page faults handled so far; FrameReclaimer derives the fault
+	// rate from it
+	static long faults = 0;
+	// page faults on pages that were never written to swap (first touches)
+	static long firstTouches = 0;
+	// faults that found their page still in a frame on standby (minor), and the
+	// others; see standbyFrame()
+	static long minorFaults = 0;
+	static long majorFaults = 0;
+	// swap-ins issued by page faults that have not completed yet; background
+	// writeback gives way to them, see Writeback.yielding()
+	static int swapInsInFlight = 0;
+	// completion events of finished faults, for reuse; see complete()
+	private static final ArrayDeque<SystemEvent> events = new ArrayDeque<SystemEvent>();
 
 	/**
 	 * Purpose: This method handles a page fault.
@@ -46,33 +60,60 @@ public class PageFaultHandler extends IflPageFaultHandler {
 		if (page.isValid()) {
 			return FAILURE;
 		}
+		faults++;
+		long start = HClock.get();
+//		 A dying task may have lost its page table already
+		if (thread.getTask().getPageTable() != null) {
+			thread.getTask().getPageTable().faults++;
+		}
 
-//		 Creating a new empty frame. 
-		FrameTableEntry NFrame = null;
-//		 Searching for the first free frame, starting the search from frame[0].
+//		 A page whose frame is still on standby goes back into that frame
+		FrameTableEntry NFrame = standbyFrame(page);
+		boolean minor = NFrame != null;
+//		 A task that holds its frame quota replaces one of its own pages
+		if (NFrame == null) {
+			NFrame = WorkingSetQuota.localVictim(thread.getTask());
+		}
+//		 A run of superpages with no page in memory goes into a block of free frames
+		boolean block = false;
+		if (NFrame == null) {
+			NFrame = Superpages.blockFrame(page);
+			block = NFrame != null;
+		}
+//		 Otherwise search for a free frame.
 //		 The new frame found will be stored in the variable "NFrame"
-		NFrame = getFreeFrame();
+		if (NFrame == null) {
+			NFrame = getFreeFrame();
+		}
 
 //		 Check if the frame is still empty
 		if (NFrame == null) {
 
-			NFrame = SecondChance();
+//			Ask the replacement policy for a free frame or a victim
+			long scanStart = MemoryStats.timing ? System.nanoTime() : 0;
+			NFrame = (FrameTableEntry) MMU.policy.selectVictim();
+			if (MemoryStats.timing) {
+				MemoryStats.victimNanos.record(System.nanoTime() - scanStart);
+			}
 
 			if (NFrame == null) {
 
+//				OSP expects a dispatch on every way out of the interrupt
+				MemoryStats.notEnoughMemory++;
+				ThreadCB.dispatch();
 				return NotEnoughMemory;
 			}
 		}
 
-//			 If the frame is still empty after performing SecondChance; return "NotEnoughMemory".
+//			 If the frame is still empty after running the replacement policy; return "NotEnoughMemory".
 
 //		 Set the validating thread of the page to input thread.
 		page.setValidatingThread(thread);
-//		 Create a new event: "event" of type SystemEvent() 
+//		 Take an event of type SystemEvent from the pool.
 //		 The event object is saved in the variable "event", because when pagefault handling 
 //		 is finished the thread will be resumed by
-//		 executing notifyThreads() on that event.
-		Event event = new SystemEvent("PageFaultHappend");
+//		 executing notifyThreads() on that event, see complete().
+		SystemEvent event = newEvent();
 //	 	 Suspend the thread. 
 		thread.suspend(event);
 
@@ -80,7 +121,7 @@ public class PageFaultHandler extends IflPageFaultHandler {
 		if (!NFrame.isReserved() && NFrame.getLockCount() <= 0) {
 
 //			Protect the frame from theft by reserving the frame.
-			NFrame.setReserved(thread.getTask());
+			NFrame.reserve(thread.getTask());
 
 		}
 //		If the frame contains a dirty page, then swap-out will
@@ -91,88 +132,99 @@ public class PageFaultHandler extends IflPageFaultHandler {
 			if (NFrame.isDirty()) {
 //				Swap-out
 				NFrame.getPage().getTask().getSwapFile().write(NFrame.getPage().getID(), NFrame.getPage(), thread);
+				MemoryStats.swappedOut(Npage);
+				MemoryStats.dirtyEvictions++;
 //				The thread that caused the pagefault can be killed by the simulator at any moment after
 //				the thread goes to sleep waiting for the swap-out to complete.
 //				FAILURE is returned in that case	
 				if (thread.getStatus() == GlobalVariables.ThreadKill) {
-					page.notifyThreads();
-					event.notifyThreads();
+//					The victim stays where it is; give up the reservation and the page
+					NFrame.release(thread.getTask());
+					page.setValidatingThread(null);
+					complete(page, event);
+					MemoryStats.killedInFault++;
 					ThreadCB.dispatch();
 					return FAILURE;
 
 				}
 //				Setting the frame's dirty bit to false = not dirty = clean. 
 				NFrame.setDirty(false);
+				Npage.swapped = true;
 
 			}
-//			Freeing the frame:
-//			Dereferencing the frame.
-//			System.out.println("2");
-			NFrame.setReferenced(false);
-//			 Check if the page is not empty and the frame is not locked
-			if (Npage != null ) {
-
-//	  		    Setting the page's validity bit to 0
-				Npage.setValid(false);
-//				Emptying the page's frame by setting it to null frame.
-				Npage.setFrame(null);
-//				Emptying the frame by setting it to no page (null page) 
-				NFrame.setPage(null);
-
-			}
+//			Freeing the frame: invalidate the page and empty the frame
+			freeFrame(NFrame);
 
 		}
 //		Setting the page's frame to the new frame
 		page.setFrame(NFrame);
-		NFrame.setPage(page);
-//		Swap-in
-		page.getTask().getSwapFile().read(page.getID(), page, thread);
+		NFrame.map(page);
+//		Fill the rest of the superpage block and read ahead the next pages of the
+//		task into free frames, if any; the page itself is read last so that it
+//		only becomes valid when the fault ends.
+//		Swap-in, unless the thread was killed during the read-ahead. A first
+//		touch has nothing in swap and a minor fault finds the page still in its
+//		frame, but OSP only lets a page become valid after a swap-in, so they
+//		are read all the same
+		if (minor) {
+			minorFaults++;
+		} else {
+			majorFaults++;
+		}
+		if (!page.swapped) {
+			firstTouches++;
+		}
+		if ((!block || Superpages.fill(thread, page, NFrame)) && ReadAhead.prefetch(thread, page)) {
+			swapIn(thread, page);
+		}
 //		The thread that caused the pagefault can be killed by the simulator
 //		at any moment after the thread goes to sleep waiting for the swap-in to complete.
 //		FAILURE is returned in that case	
 		if (thread.getStatus() == ThreadKill) {
 			page.setValidatingThread(null);
 			page.setFrame(null);
-			page.notifyThreads();
 
-//			if (NFrame.getReserved() == thread.getTask()) {
-//				NFrame.setUnreserved(thread.getTask());
-//			}
-			NFrame.setReferenced(false);
-			NFrame.setDirty(false);
-			event.notifyThreads();
-			NFrame.setPage(null);
+//			If the task died meanwhile, do_deallocateMemory has already emptied the
+//			frame and it may have been handed out again: leave it alone then
+			if (NFrame.getPage() == page) {
+				NFrame.setReferenced(false);
+				NFrame.setDirty(false);
+				NFrame.map(null);
+			}
+			NFrame.release(thread.getTask());
+			complete(page, event);
+			MemoryStats.killedInFault++;
 			ThreadCB.dispatch();
 			return FAILURE;
 		}
 
 //		Setting the validity bit to true
 		page.setValid(true);
+		MemoryStats.faultServed(page, minor, HClock.get() - start);
+		MMU.policy.pageLoaded(NFrame);
 //		Unreserving the frame if its still reserved
 		if (NFrame.getReserved() == thread.getTask()) {
-			NFrame.setUnreserved(thread.getTask());
+			NFrame.unreserve(thread.getTask());
 		}
 		NFrame.setReferenced(true);
-		page.notifyThreads();
-		event.notifyThreads();
+		NFrame.sampled = true;
 //		Setting the frame's dirty bit to true if the reference type is MemoryWrite, else unset the dirty bit
 		if (referenceType == MemoryWrite) {
-			NFrame.setDirty(true);
+			NFrame.written();
 		} else {
 			NFrame.setDirty(false);
 		}
-//		Finalizing by clearing the page's validity bit, notifying the threads then dispatching. 
+//		Finalizing by clearing the page's validating thread, notifying the threads then dispatching. 
 		page.setValidatingThread(null);
-		page.notifyThreads();
-		event.notifyThreads();
+		complete(page, event);
 		ThreadCB.dispatch();
 		return SUCCESS;
 	}
 
 	/**
-	 * Purpose: Calculate the current number of free frames. It does not matter
-	 * where the search in the frame table starts. Note: this method will not change
-	 * the value of the reference bits, dirty bits or MMU.Cursor.
+	 * Purpose: Calculate the current number of free frames. The count is kept by
+	 * FreeFramePool, so this is constant time. Note: this method will not change
+	 * the value of the reference bits, dirty bits or the policy's cursor.
 	 * 
 	 * Output: Integer of type (int) represnting the current number of free frames.
 	 * 
@@ -183,23 +235,16 @@ public class PageFaultHandler extends IflPageFaultHandler {
 	 */
 	static int numFreeFrames() {
 
-		int curentFreeFrames = 0;
-		FrameTableEntry frame;
-		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
-			frame = MMU.getFrame(i);
-			if ((frame.getPage() == null) && (!frame.isReserved()) && (frame.getLockCount() == 0) && frame != null) {
-				curentFreeFrames++;
-			}
-		}
-		return curentFreeFrames;
+		return FreeFramePool.size();
 
 	}
 
 	/**
-	 * Purpose: Looks for a free frame; returns the first free frame starting the
-	 * search from frame[0].
+	 * Purpose: Looks for a free frame; returns the frame at the head of the free
+	 * frame pool, in constant time.
 	 * 
-	 * Output: Returns a frame of type FrameTableEntry.
+	 * Output: Returns a frame of type FrameTableEntry, or null if no frame is
+	 * free.
 	 * 
 	 * @OSPProject Memory
 	 * 
@@ -209,180 +254,148 @@ public class PageFaultHandler extends IflPageFaultHandler {
 
 	static FrameTableEntry getFreeFrame() {
 
-		FrameTableEntry frame = null;
-		int i = 0;
-		while (i < MMU.getFrameTableSize()) {
-			frame = MMU.getFrame(i);
-			if ((frame.getPage() == null) && (!frame.isReserved()) && (frame.getLockCount() == 0) && frame != null) {
-				return frame;
+		return FreeFramePool.first();
 
-			}
-			i++;
-		}
-		return null;
+	}
 
+	/**
+	 * Purpose: Tells whether a frame holds a page that may be evicted, i.e. the
+	 * frame is neither locked nor reserved.
+	 * 
+	 * @OSPProject Memory
+	 */
+	static boolean isEvictable(FrameTableEntry frame) {
+		return frame.getPage() != null && frame.getLockCount() == 0 && !frame.isReserved();
 	}
 
 	/**
-	 * Purpose: Frees frames using the Second Chance approach. The search uses the
-	 * MMU variable MMU.Cursor to specify the starting frame index of the search.
+	 * Purpose: Returns the frame that still holds an evicted page, if that frame
+	 * is free and nobody has used it since (see
+	 * FrameTableEntry.unmapToStandby()). A fault that finds such a frame is a
+	 * minor fault. It would need no I/O, but OSP clears its own copy of the
+	 * valid bit whenever a clean page is invalidated and rejects setValid(true)
+	 * until a swap-in has completed, so the page is read into the frame anyway.
 	 * 
-	 * Output: Returns a frame of type FrameTableEntry.
+	 * Output: The frame, or null if there is none.
 	 * 
 	 * @OSPProject Memory
-	 * 
-	 *             Authors: Abdulaziz Hasan 1555528, Mohammed Shukri 1647376 Date of
-	 *             the Last modification: 17/4/2020
 	 */
-	static FrameTableEntry SecondChance() {
-		FrameTableEntry frame;
-		boolean isdirty = true;
-		int frameID = 0;
-		int counter = 0;
-		int x = MMU.getFrameTableSize() * 2;
-		// Phase I - Batch freeing of occupied frames that are clean.
-
-		while (counter < x && numFreeFrames() < MMU.wantFree) {
-			frame = MMU.getFrame(MMU.Cursor);
-			// 1. If a page's reference bit is set, clear it and move to the next frame
-			if (frame.isReferenced()) {
-				frame.setReferenced(false);
-				// MMU.Cursor++; // or could try frame = MMU.getFrame(MMU.Cursor + 1);
-			}
-			// 2. Finding a clean frame; i.e. a frame containing a page and whose reference
-			// bit is
-			// not set, and the frame is not locked and not reserved and not dirty.
-			else if (frame.getPage() != null && frame.isReferenced() == false && frame.getLockCount() == 0
-					&& frame.isReserved() == false && frame.isDirty() == false && numFreeFrames() <= MMU.wantFree) {
-				// a. freeing the frame
-				// b. Updating a page table
-
-				// set validity flag to false
-				frame.getPage().setValid(false);
-				// set frame entry to null
-				frame.getPage().setFrame(null);
-				// free frame
-				frame.setPage(null);
-				// didn't clean the page
-				frame.setDirty(false);
-				// didn't unset the reference bit
-				// frame.setReferenced(false);
-				
-
-			}
-			if (frame.getLockCount() == 0 && !frame.isReserved() && frame.isDirty() && isdirty) {
-				frameID = frame.getID();
-				isdirty = false;
-			}
-			MMU.Cursor = (MMU.Cursor + 1) % MMU.getFrameTableSize();
-			counter++;
-		}
-
-		/*- Phase II - Skip if the number of free frames is wantFree, otherwise do the following: */
-
-		if (numFreeFrames() != MMU.wantFree) {
-
-//			If the number of free frames from Phase I is less than wantFree and we did
-//			not come across any dirty frames
-			if (numFreeFrames() < MMU.wantFree && isdirty) {
-				System.out.println("isDirst == True");
-//				Invoking getFreeFrame() to get a free frame. 
-				FrameTableEntry freeFrame = getFreeFrame();
-//				Return the free frame.
-				return freeFrame;
-			}
-			return MMU.getFrame(frameID);
-
+	static FrameTableEntry standbyFrame(PageTableEntry page) {
+		FrameTableEntry frame = page.standbyFrame;
+		if (frame != null && frame.standby == page && FreeFramePool.isFree(frame)) {
+			return frame;
 		}
-
-		/* Phase III - Phase one managed to free "wantFree" frames */
-		else {
-
-//				invoking getFreeFrame() to get a free frame.
-			FrameTableEntry freeFrame = getFreeFrame();
-//				Returning the free frame.
-			return freeFrame;
-		}
-
-		// Return null if no appropriate frame is found.
-
+		return null;
 	}
 
 	/**
-	 * Purpose: Frees frames using the Second Chance approach. The search uses the
-	 * MMU variable MMU.Cursor to specify the starting frame index of the search.
-	 * 
-	 * Output: Returns a frame of type FrameTableEntry.
+	 * Purpose: Takes the page out of a frame: the page becomes invalid, its
+	 * cached translation is dropped, and the frame is emptied, cleaned and
+	 * dereferenced. The frame is left on standby with the page. The caller must
+	 * have written the page out first if it was dirty.
 	 * 
 	 * @OSPProject Memory
-	 * 
-	 *             Authors: Abdulaziz Hasan 1555528, Mohammed Shukri 1647376 Date of
-	 *             the Last modification: 18/4/2020
 	 */
-	static FrameTableEntry Fifo() {
-		MyOut.print("osp.Memory.PageFaultHandler", "Starting FIFO");
-		FrameTableEntry frame;
-		int counter = 0;
-
-		// Phase I - Batch freeing of occupied frames that are clean.
+	static void freeFrame(FrameTableEntry frame) {
+		PageTableEntry page = frame.getPage();
+		// OSP wants the frame clean and dereferenced before the page goes invalid
+		frame.setDirty(false);
+		frame.setReferenced(false);
+		if (page != null) {
+			// set validity flag to false
+			page.setValid(false);
+			MMU.invalidateTranslation(page);
+			// set frame entry to null
+			page.setFrame(null);
+		}
+		// free frame, keeping its contents for the page
+		frame.unmapToStandby();
+		MMU.policy.pageUnloaded(frame);
+	}
 
-		while ((counter > (MMU.getFrameTableSize())) && (numFreeFrames() <= MMU.wantFree)) {
+	/**
+	 * Purpose: Reads a page that is not in memory into a free frame on behalf
+	 * of a fault on another page (read-ahead, superpages). The page is left
+	 * valid, clean and unreferenced.
+	 *
+	 * Inputs: - thread the faulting thread, which performs the read
+	 *
+	 * Output: false if the thread was killed during the read.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean load(ThreadCB thread, PageTableEntry page, FrameTableEntry frame) {
+		TaskCB task = page.getTask();
 
-			frame = MMU.getFrame(MMU.Cursor);
+		frame.reserve(task);
+		page.setValidatingThread(thread);
+		page.setFrame(frame);
+		frame.map(page);
+		swapIn(thread, page);
 
-			// 2. Finding a clean frame; i.e. a frame containing a page and whose reference
-			// bit is
-			// not set, and the frame is not locked and not reserved and not dirty.
-			if (frame.getPage() != null && frame.isReferenced() == false && frame.getLockCount() == 0
-					&& frame.isReserved() == false && frame.isDirty() == false) {
-				// a. freeing the frame
-				// b. Updating a page table
-				frameFreeing(frame);
+		if (thread.getStatus() == GlobalVariables.ThreadKill) {
+			page.setValidatingThread(null);
+			page.setFrame(null);
+			page.notifyThreads();
+			// do_deallocateMemory may have emptied and handed out the frame already
+			if (frame.getPage() == page) {
+				frame.setReferenced(false);
+				frame.setDirty(false);
+				frame.map(null);
 			}
-
-			MMU.Cursor = (MMU.Cursor + 1) % MMU.getFrameTableSize();
-			counter++;
-
+			frame.release(task);
+			return false;
 		}
-		/* Phase II - Phase one managed to free "wantFree" frames */
-		if (numFreeFrames() == MMU.wantFree) {
-
-//					invoking getFreeFrame() to get a free frame.
-			FrameTableEntry freeFrame = getFreeFrame();
-//					Returning the free frame.
-			return freeFrame;
 
+		page.setValid(true);
+		MMU.policy.pageLoaded(frame);
+		if (frame.getReserved() == task) {
+			frame.unreserve(task);
 		}
-		// Return null if no appropriate frame is found.
-		return null;
-
+		page.setValidatingThread(null);
+		page.notifyThreads();
+		return true;
 	}
 
-	static FrameTableEntry frameFreeing(FrameTableEntry frame) {
+	/**
+	 * Purpose: Reads a page from its task's swap file into the frame it is
+	 * mapped to. The thread is suspended until the read has completed.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void swapIn(ThreadCB thread, PageTableEntry page) {
+		swapInsInFlight++;
+		page.getTask().getSwapFile().read(page.getID(), page, thread);
+		swapInsInFlight--;
+		MemoryStats.swappedIn(page);
+	}
 
-		// a. freeing the frame
-		frame.setPage(null);
-		frame.setDirty(false);
-		frame.setReferenced(false);
-		// b. Updating a page table
-		frame.getPage().setFrame(null);
-		frame.getPage().setValid(false);
-		return frame;
+	/**
+	 * Purpose: Takes a completion event for a page fault from the pool, or
+	 * creates one if the pool is empty. The pool only grows to the number of
+	 * faults in flight at the same time.
+	 * 
+	 * @OSPProject Memory
+	 */
+	static SystemEvent newEvent() {
+		SystemEvent event = events.poll();
+		return event != null ? event : new SystemEvent("PageFaultHappend");
 	}
 
-	static Event reserve(ThreadCB thread, PageTableEntry page, FrameTableEntry frame) {
-//		Create a new event: "event" of type SystemEvent() 
-//		The event object is saved in the variable "event", because when pagefault handling 
-//		is finished the thread will be resumed by
-//		executing notifyThreads() on that event.
-		Event event = new SystemEvent("PageFaultHappend");
-//	 	Suspend the thread. 
-		thread.suspend(event);
-//		Set the validating thread of the page to input thread.
-		page.setValidatingThread(thread);
-//		Protect the frame from theft by reserving the frame.
-		frame.setReserved(thread.getTask());
-		return event;
+	/**
+	 * Purpose: Ends a page fault, whatever its outcome. Every thread waiting
+	 * for the page (the readers, writers and I/O lockers that found the fault
+	 * in flight, see MMU.do_refer() and PageTableEntry.do_lock()) and the
+	 * faulting thread are woken once, in one batch, and the event goes back to
+	 * the pool, empty. The caller must have cleared the page's validating
+	 * thread.
+	 * 
+	 * @OSPProject Memory
+	 */
+	static void complete(PageTableEntry page, SystemEvent event) {
+		page.notifyThreads();
+		event.notifyThreads();
+		events.push(event);
 	}
 
 }
@@ -5,9 +5,20 @@ package osp.Memory;
     A PageTable consists of an array of PageTableEntry objects.  This
     page table is of the non-inverted type.
 
+    The table is flat and every entry exists from the start: OSP checks
+    in TaskCB.setPageTable() that pages has 2^PageAddressBits entries,
+    each with the right page number and task, and IflMMU reads the array
+    directly on every reference, so entries cannot be created on first
+    touch.
+
+    For the same reason there is no inverted page table. IflMMU and the
+    fault handling in OSP look pages up in this array and ask the entry
+    itself whether it is valid, so a global table hashed on (task, page)
+    could never replace it: it would save no memory and would only add
+    a hash probe to every translation and upkeep to every map and unmap.
+
     @OSPProject Memory
 */
-import java.lang.Math;
 import osp.Tasks.*;
 import osp.Utilities.*;
 import osp.IFLModules.*;
@@ -15,6 +26,25 @@ import osp.Hardware.*;
 
 public class PageTable extends IflPageTable {
 	int arraySize;
+	// address space number that tags this task's entries in the TLB
+	final int asid;
+	static int nextAsid = 0;
+	// resident set: the frames holding pages of this task, linked through
+	// FrameTableEntry.rmapNext/rmapPrev
+	private FrameTableEntry resident = null;
+	private int residentCount = 0;
+	// page faults of the task
+	long faults = 0;
+	// estimated working set and frame quota of the task, set by
+	// WorkingSetQuota; a quota of 0 means none
+	int workingSet = 0;
+	int quota = 0;
+	// per-task counters of MemoryStats: references, pages read from and
+	// written to swap, and ticks spent in successful page faults
+	long references = 0;
+	long swapIns = 0;
+	long swapOuts = 0;
+	long faultTicks = 0;
 
 	/**
 	 * The page table constructor. Must call
@@ -32,10 +62,10 @@ public class PageTable extends IflPageTable {
 
 		// call super
 		super(ownerTask);
+		asid = nextAsid++;
 
 		// get the size of page table
-		int size = MMU.getPageAddressBits();
-		arraySize = (int) Math.pow(2, size);
+		arraySize = 1 << MMU.getPageAddressBits();
 
 		// create page table array
 		pages = new PageTableEntry[arraySize];
@@ -44,6 +74,7 @@ public class PageTable extends IflPageTable {
 		for (int i = 0; i < pages.length; i++)
 			pages[i] = new PageTableEntry(this, i);
 
+		MemoryStats.taskCreated(this);
 	}
 
 	/**
@@ -56,33 +87,114 @@ public class PageTable extends IflPageTable {
 		// your code goes here
 		TaskCB task = getTask();
 
-		for (int i = 0; i < MMU.getFrameTableSize(); i++) {
+		// none of the task's translations may survive it
+		MMU.flushTranslations(this);
+		MemoryStats.taskEnded(this);
+		if (TraceRecorder.recording) {
+			TraceRecorder.taskEnded(task);
+		}
+		CompressedSwapEstimator.taskEnded(task);
 
-			// copy frame
-			FrameTableEntry frame = MMU.getFrame(i);
+		// only the frames of the resident set can hold pages of the task
+		for (FrameTableEntry frame : getResidentFrames()) {
 
-			// get frame page
-			PageTableEntry page = frame.getPage();
+			// nullify the page
+			frame.map(null);
+			MMU.policy.pageDeallocated(frame);
 
-			// check if page task equal task and page isn't null
-			if (page != null && page.getTask() == task) {
+			// clean the page
+			frame.setDirty(false);
 
-				// nullify the page
-				frame.setPage(null);
+			// unset the reference
+			frame.setReferenced(false);
 
-				// clean the page
-				frame.setDirty(false);
+			// check if the task reserved a given frame then unreserves the freed pages
+			if (task == frame.getReserved())
+				frame.unreserve(task);
 
-				// unset the reference
-				frame.setReferenced(false);
+		}
 
-				// check if the task reserved a given frame then unreserves the freed pages
-				if (task == frame.getReserved())
-					frame.setUnreserved(task);
-			}
+	}
+
+	/**
+	 * Purpose: Adds a frame to the resident set. Called by FrameTableEntry.map()
+	 * when a page of this task is put into the frame.
+	 * 
+	 * @OSPProject Memory
+	 */
+	void addResident(FrameTableEntry frame) {
+		frame.rmapOwner = this;
+		frame.rmapPrev = null;
+		frame.rmapNext = resident;
+		if (resident != null) {
+			resident.rmapPrev = frame;
+		}
+		resident = frame;
+		residentCount++;
+	}
+
+	/**
+	 * Purpose: Takes a frame out of the resident set. Called by
+	 * FrameTableEntry.map() when the frame loses its page.
+	 * 
+	 * @OSPProject Memory
+	 */
+	void removeResident(FrameTableEntry frame) {
+		if (frame.rmapOwner != this) {
+			return;
+		}
+		if (frame.rmapPrev != null) {
+			frame.rmapPrev.rmapNext = frame.rmapNext;
+		} else {
+			resident = frame.rmapNext;
+		}
+		if (frame.rmapNext != null) {
+			frame.rmapNext.rmapPrev = frame.rmapPrev;
+		}
+		frame.rmapOwner = null;
+		frame.rmapNext = null;
+		frame.rmapPrev = null;
+		residentCount--;
+	}
+
+	/**
+	 * Purpose: Returns the number of frames holding pages of this task, in
+	 * constant time. A frame that OSP emptied behind our back (it does so for
+	 * the swap-in of a killed thread) is counted until it is reused or
+	 * getResidentFrames() is called.
+	 * 
+	 * @OSPProject Memory
+	 */
+	int getResidentCount() {
+		return residentCount;
+	}
 
+	/**
+	 * Purpose: Returns the frames holding pages of this task. The array is a
+	 * copy, so the caller may evict the frames while going through it. Frames
+	 * that no longer hold a page of the task are dropped from the set.
+	 * 
+	 * Output: An array of getResidentCount() frames.
+	 * 
+	 * @OSPProject Memory
+	 */
+	FrameTableEntry[] getResidentFrames() {
+		FrameTableEntry frame = resident;
+		while (frame != null) {
+			FrameTableEntry next = frame.rmapNext;
+			PageTableEntry page = frame.getPage();
+			if (page == null || page.getTask() != getTask()) {
+				removeResident(frame);
+			}
+			frame = next;
 		}
 
+		FrameTableEntry[] frames = new FrameTableEntry[residentCount];
+		int n = 0;
+		for (frame = resident; frame != null; frame = frame.rmapNext) {
+			frames[n++] = frame;
+		}
+		return frames;
 	}
 
 	/*
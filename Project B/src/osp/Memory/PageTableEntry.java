@@ -45,9 +45,14 @@ public class PageTableEntry extends IflPageTableEntry {
 	 */
 	public int do_lock(IORB iorb) {
 		// your code goes here
+		if (TraceRecorder.recording) {
+			TraceRecorder.reference(getTask(), getID(), MemoryLock);
+		}
 
-		// check if the page isn't valid
-		if (!isValid()) {
+		// check if the page isn't valid. The page fault we wait for may fail or the
+		// page may be taken away again before we run, so check again after waking up
+		boolean joined = false;
+		while (!isValid()) {
 
 			// check the validation event doesn't present
 			if (getValidatingThread() == null) {
@@ -56,7 +61,7 @@ public class PageTableEntry extends IflPageTableEntry {
 				int PFH = PageFaultHandler.handlePageFault(iorb.getThread(), MemoryLock, this);
 
 				// check if the pagefault fails
-				if (PFH == FAILURE || iorb.getThread().getStatus() == ThreadKill) {
+				if (PFH != SUCCESS || iorb.getThread().getStatus() == ThreadKill) {
 					return FAILURE;
 				}
 
@@ -65,15 +70,29 @@ public class PageTableEntry extends IflPageTableEntry {
 			// check if the thread caused the page fault equal to this thread
 			else if (getValidatingThread() != iorb.getThread()) {
 
-				// suspend thread
+				// suspend thread until the fault in flight wakes it
+				if (!joined) {
+					MemoryStats.joinedFaults++;
+					joined = true;
+				}
 				iorb.getThread().suspend(this);
 
+				if (iorb.getThread().getStatus() == ThreadKill) {
+					return FAILURE;
+				}
+
+			}
+
+			// the swap I/O of this thread's own page fault: the frame is already set
+			else {
+				break;
 			}
 
 		}
 
 		// increment lockCount
-		getFrame().incrementLockCount();
+		ReadAhead.used(this);
+		getFrame().lock();
 		return SUCCESS;
 
 	}
@@ -91,7 +110,7 @@ public class PageTableEntry extends IflPageTableEntry {
 		// decrement lockCount if is not equal or less than 0
 		if (getFrame().getLockCount() > 0) {
 
-			getFrame().decrementLockCount();
+			getFrame().unlock();
 		}
 	}
 
@@ -99,6 +118,18 @@ public class PageTableEntry extends IflPageTableEntry {
 	 * Feel free to add methods/fields to improve the readability of your code
 	 */
 
+	// true while the page sits in memory because of read-ahead and has not been
+	// used yet; see ReadAhead
+	boolean prefetched = false;
+
+	// true once the page has been written to the swap file; until then the swap
+	// file holds nothing for it and a page fault on it is a first touch
+	boolean swapped = false;
+
+	// the free frame that still holds the page since it was evicted, if nobody
+	// has used that frame yet; see FrameTableEntry.unmapToStandby()
+	FrameTableEntry standbyFrame = null;
+
 }
 
 /*
@@ -0,0 +1,27 @@
+package osp.Memory;
+
+/**
+ * Purpose: What a replacement policy sees of a frame: its ID, the page it
+ * holds, and its reference and dirty bits. FrameTableEntry implements it in
+ * the simulator and ReplayFrame in TraceReplay, so the same policies pick the
+ * victims of both.
+ *
+ * @OSPProject Memory
+ */
+interface PolicyFrame {
+
+	int getID();
+
+	/**
+	 * Output: The page held, or null if the frame is free. Policies only
+	 * compare pages, so any object that identifies the page will do.
+	 */
+	Object getPage();
+
+	boolean isReferenced();
+
+	void setReferenced(boolean flag);
+
+	boolean isDirty();
+
+}
@@ -0,0 +1,160 @@
+package osp.Memory;
+
+import osp.Threads.*;
+
+/**
+ * Purpose: Read-ahead on swap-in. When a page fault swaps its page in, the
+ * handler also reads the next few pages of the same task that are not in
+ * memory, as long as there are free frames for them; read-ahead never evicts
+ * anything. With UseLocalAccessPattern on, those pages are very likely to be
+ * referenced soon, and each one read ahead saves a later page fault.
+ *
+ * A page that was read ahead is marked (PageTableEntry.prefetched) until it is
+ * first used, which counts as a hit, or loses its frame unused, which counts
+ * as a waste. Every ADAPT_PERIOD outcomes the window is doubled if at least
+ * three quarters were hits and halved if fewer than half were, staying between
+ * 1 and ReadAheadMax pages.
+ *
+ * ReadAheadWindow sets the initial window (default 4 pages with
+ * UseLocalAccessPattern on, 0 otherwise); 0 turns read-ahead off.
+ *
+ * @OSPProject Memory
+ */
+final class ReadAhead {
+	// number of outcomes (hits and wastes) between two window adjustments
+	private static final int ADAPT_PERIOD = 16;
+
+	private static int window;
+	private static int maxWindow;
+
+	private static long issued = 0;
+	private static long hits = 0;
+	private static long wasted = 0;
+	// outcomes since the last window adjustment
+	private static int periodHits = 0;
+	private static int periodOutcomes = 0;
+
+	private ReadAhead() {
+	}
+
+	/**
+	 * Purpose: Reads the read-ahead keys of the [Memory] section. Called from
+	 * MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		int local = MemoryConfig.getInt("UseLocalAccessPattern", 0);
+		window = Math.max(0, MemoryConfig.getInt("ReadAheadWindow", local != 0 ? 4 : 0));
+		maxWindow = Math.max(window, MemoryConfig.getInt("ReadAheadMax", 4 * window));
+		issued = hits = wasted = 0;
+		periodHits = periodOutcomes = 0;
+	}
+
+	/**
+	 * Purpose: Reads ahead the pages that follow the page of a fault. Called by
+	 * the page fault handler once the page has its frame and before the page
+	 * itself is read, so that the page only becomes valid when the fault ends
+	 * (OSP checks the frame's dirty bit against the reference that faulted).
+	 *
+	 * Inputs: - thread the faulting thread, which performs the reads - page the
+	 * page of the fault
+	 *
+	 * Output: false if the thread was killed during a read, true otherwise.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean prefetch(ThreadCB thread, PageTableEntry page) {
+		PageTable pageTable = page.getTask().getPageTable();
+		if (window == 0 || pageTable == null) {
+			return true;
+		}
+		int last = Math.min(page.getID() + window, pageTable.pages.length - 1);
+		for (int id = page.getID() + 1; id <= last; id++) {
+			PageTableEntry next = pageTable.pages[id];
+			if (next.isValid() || next.getValidatingThread() != null) {
+				continue;
+			}
+			FrameTableEntry frame = PageFaultHandler.getFreeFrame();
+			if (frame == null) {
+				break;
+			}
+			if (!read(thread, next, frame)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Purpose: Reads one page into a free frame. The page is left valid,
+	 * unreferenced and marked as read ahead.
+	 *
+	 * Output: false if the thread was killed during the read.
+	 *
+	 * @OSPProject Memory
+	 */
+	private static boolean read(ThreadCB thread, PageTableEntry page, FrameTableEntry frame) {
+		issued++;
+		if (!PageFaultHandler.load(thread, page, frame)) {
+			return false;
+		}
+		page.prefetched = true;
+		return true;
+	}
+
+	/**
+	 * Purpose: Notes a use of a page. The first use of a page that was read
+	 * ahead counts as a hit.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void used(PageTableEntry page) {
+		if (page.prefetched) {
+			page.prefetched = false;
+			hits++;
+			outcome(true);
+		}
+	}
+
+	/**
+	 * Purpose: Notes that a page lost its frame. A page that was read ahead and
+	 * never used counts as a waste. Called by FrameTableEntry.map().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void unmapped(PageTableEntry page) {
+		if (page.prefetched) {
+			page.prefetched = false;
+			wasted++;
+			outcome(false);
+		}
+	}
+
+	private static void outcome(boolean hit) {
+		if (hit) {
+			periodHits++;
+		}
+		if (++periodOutcomes < ADAPT_PERIOD) {
+			return;
+		}
+		if (4 * periodHits >= 3 * periodOutcomes) {
+			window = Math.min(maxWindow, 2 * window);
+		} else if (2 * periodHits < periodOutcomes) {
+			window = Math.max(1, window / 2);
+		}
+		periodHits = periodOutcomes = 0;
+	}
+
+	/**
+	 * Purpose: Returns the read-ahead statistics for MMU.atError() and
+	 * MMU.atWarning().
+	 *
+	 * @OSPProject Memory
+	 */
+	static String stats() {
+		return "ReadAhead(window " + window + ", max " + maxWindow + "): read " + issued + ", hits " + hits
+				+ ", wasted " + wasted;
+	}
+
+}
@@ -0,0 +1,121 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: A page replacement policy. The page fault handler asks the policy
+ * for a frame whenever the free frame pool is empty. The policy may free clean
+ * frames on its own (through PageFaultHandler.freeFrame()), and either returns
+ * one of the free frames or an occupied, evictable victim that the fault
+ * handler swaps out first if it is dirty.
+ *
+ * The policy in use is chosen by the ReplacementPolicy key of the [Memory]
+ * section of params.osp. Every policy keeps its own cursor and bookkeeping and
+ * works on a FrameTable: the simulator's, or TraceReplay's for a replay.
+ *
+ * @OSPProject Memory
+ */
+public interface ReplacementPolicy {
+
+	/**
+	 * Purpose: The name of the policy, as used in params.osp.
+	 */
+	String getName();
+
+	/**
+	 * Purpose: Called after a page has been brought into the frame and made
+	 * valid.
+	 */
+	void pageLoaded(PolicyFrame frame);
+
+	/**
+	 * Purpose: Called after the frame has lost its page, whoever took it away.
+	 * The frame may never have been reported to pageLoaded().
+	 */
+	void pageUnloaded(PolicyFrame frame);
+
+	/**
+	 * Purpose: Called instead of pageUnloaded() after the frame has lost its
+	 * page because the task of the page ended. The page will never be
+	 * referenced again, so it was not evicted.
+	 */
+	void pageDeallocated(PolicyFrame frame);
+
+	/**
+	 * Purpose: Finds a frame for a page fault.
+	 *
+	 * Output: A free frame, or an occupied frame that may be evicted (swapping it
+	 * out first if it is dirty), or null if no frame can be had.
+	 */
+	PolicyFrame selectVictim();
+
+	/**
+	 * Purpose: Finds frames for background reclaim. Clean victims are freed as
+	 * in selectVictim(); dirty victims are reserved (Writeback.reserve()) and
+	 * collected for one batched writeback, until the free frames and the
+	 * collected victims together reach wantFree or max victims are collected.
+	 *
+	 * Only the simulator reclaims in the background, so the frame table must be
+	 * FrameTable.MEMORY.
+	 *
+	 * Output: The dirty victims, possibly none; Writeback.writeBatch() must be
+	 * called on them.
+	 */
+	List<FrameTableEntry> selectDirtyVictims(int max);
+
+	/**
+	 * Purpose: The number of free frames the policy tries to have after a call
+	 * to selectVictim().
+	 */
+	int getWantFree();
+
+	void setWantFree(int wantFree);
+
+	/**
+	 * Purpose: Creates the policy with the given name for the simulator. Unknown
+	 * names fall back to Clock (second chance) with a warning.
+	 *
+	 * @OSPProject Memory
+	 */
+	static ReplacementPolicy forName(String name) {
+		ReplacementPolicy policy = forName(name, FrameTable.MEMORY,
+				MemoryConfig.getInt("WSClockTau", WSClockPolicy.DEFAULT_TAU));
+		if (policy == null) {
+			MyOut.warning("osp.Memory.ReplacementPolicy", "Unknown ReplacementPolicy " + name + ", using Clock");
+			policy = new ClockPolicy(FrameTable.MEMORY);
+		}
+		return policy;
+	}
+
+	/**
+	 * Purpose: Creates the policy with the given name on a frame table, with
+	 * tau for WSClock.
+	 *
+	 * Output: The policy, or null if the name is unknown.
+	 *
+	 * @OSPProject Memory
+	 */
+	static ReplacementPolicy forName(String name, FrameTable frames, int tau) {
+		switch (name.toUpperCase()) {
+		case "CLOCK":
+		case "SECONDCHANCE":
+			return new ClockPolicy(frames);
+		case "FIFO":
+			return new FifoPolicy(frames);
+		case "LRU":
+		case "AGING":
+			return new AgingPolicy(frames);
+		case "NRU":
+			return new NruPolicy(frames);
+		case "WSCLOCK":
+			return new WSClockPolicy(frames, tau);
+		case "CAR":
+		case "ARC":
+			return new CarPolicy(frames);
+		default:
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package osp.Memory;
+
+/**
+ * Purpose: A frame of TraceReplay's memory. Like a FrameTableEntry it holds
+ * one page and has a reference bit and a dirty bit, which the replay and the
+ * replacement policies set and clear the way MMU.do_refer(), the page fault
+ * handler and the policies do in the simulator. Frames are never locked or
+ * reserved during a replay.
+ *
+ * @OSPProject Memory
+ */
+final class ReplayFrame implements PolicyFrame {
+	final int id;
+	// the page held, as numbered by TraceReplay, or null if the frame is free
+	Integer page;
+	// the task of the page
+	int task;
+	boolean referenced;
+	boolean dirty;
+
+	ReplayFrame(int id) {
+		this.id = id;
+	}
+
+	public int getID() {
+		return id;
+	}
+
+	public Object getPage() {
+		return page;
+	}
+
+	public boolean isReferenced() {
+		return referenced;
+	}
+
+	public void setReferenced(boolean flag) {
+		referenced = flag;
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
+}
@@ -0,0 +1,178 @@
+package osp.Memory;
+
+import osp.Threads.*;
+
+/**
+ * Purpose: Superpages: aligned runs of 2^SuperpageBits pages of a task (run r
+ * is pages r * size() to r * size() + size() - 1) that are backed by an
+ * aligned block of as many contiguous frames. SuperpageBits in the [Memory]
+ * section of params.osp sets the order; 0, the default, turns superpages off.
+ *
+ * A page fault on a run that has no page in memory takes a block of free
+ * frames from FreeFramePool, which keeps the fully free blocks in a list, and
+ * reads the whole run into it: the faulting page goes to its own slot and
+ * fill() reads the others, so the rest of the run costs no further faults.
+ * Once every page of a run sits in its slot of one block, the run is promoted
+ * and the TLB caches a single translation for it; MMU.do_refer() then
+ * resolves every page of the run with that one entry.
+ *
+ * Reference bits, aging and eviction stay per page. The replacement policies
+ * and OSP's own code change frames one at a time, so a run cannot be evicted
+ * as one unit. Evicting any page of a promoted run drops its superpage
+ * translation (a demotion, see TLB.invalidate()), and the run is promoted
+ * again if its pages come back to the same slots.
+ *
+ * @OSPProject Memory
+ */
+final class Superpages {
+	// log2 of the pages in a run; 0 when superpages are off
+	private static int order = 0;
+
+	// faults that took a block, pages read by fill(), runs promoted, and
+	// superpage translations dropped
+	private static long blockFaults = 0;
+	private static long filled = 0;
+	private static long promotions = 0;
+	static long demotions = 0;
+
+	private Superpages() {
+	}
+
+	/**
+	 * Purpose: Reads SuperpageBits. Called from MMU.init() before
+	 * FreeFramePool.init(), which sizes its block lists by it.
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		order = Math.max(0, MemoryConfig.getInt("SuperpageBits", 0));
+		while (order > 0 && (1 << order) > Math.min(MMU.getFrameTableSize(), 1 << MMU.getPageAddressBits())) {
+			order--;
+		}
+		blockFaults = filled = promotions = demotions = 0;
+	}
+
+	static boolean isEnabled() {
+		return order > 0;
+	}
+
+	static int order() {
+		return order;
+	}
+
+	// pages in a run, frames in a block
+	static int size() {
+		return 1 << order;
+	}
+
+	/**
+	 * Purpose: Finds the frame for a fault on a run that has no page in
+	 * memory: the page's slot in a block of free frames.
+	 *
+	 * Output: The frame, or null if superpages are off, another page of the
+	 * run is in memory or on its way in, or no block is free.
+	 *
+	 * @OSPProject Memory
+	 */
+	static FrameTableEntry blockFrame(PageTableEntry page) {
+		PageTable pageTable = page.getTask().getPageTable();
+		if (order == 0 || pageTable == null) {
+			return null;
+		}
+		int first = page.getID() & -size();
+		if (first + size() > pageTable.pages.length) {
+			return null;
+		}
+		for (int id = first; id < first + size(); id++) {
+			PageTableEntry other = pageTable.pages[id];
+			if (other.isValid() || other.getValidatingThread() != null) {
+				return null;
+			}
+		}
+		int base = FreeFramePool.firstBlock();
+		if (base < 0) {
+			return null;
+		}
+		blockFaults++;
+		return MMU.getFrame(base + (page.getID() & (size() - 1)));
+	}
+
+	/**
+	 * Purpose: Reads the other pages of the run of a fault into their slots
+	 * of the block the faulting page was given. Called by the page fault
+	 * handler before the page itself is read, like ReadAhead.prefetch(). A
+	 * slot that was taken meanwhile, or a page that came in another way, is
+	 * skipped.
+	 *
+	 * Inputs: - thread the faulting thread, which performs the reads - page
+	 * the page of the fault, mapped to frame - frame a frame from blockFrame()
+	 *
+	 * Output: false if the thread was killed during a read, true otherwise.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean fill(ThreadCB thread, PageTableEntry page, FrameTableEntry frame) {
+		PageTable pageTable = page.getTask().getPageTable();
+		if (pageTable == null) {
+			return true;
+		}
+		int first = page.getID() & -size();
+		int base = frame.getID() - (page.getID() - first);
+		for (int i = 0; i < size(); i++) {
+			PageTableEntry other = pageTable.pages[first + i];
+			FrameTableEntry slot = MMU.getFrame(base + i);
+			if (other == page || other.isValid() || other.getValidatingThread() != null
+					|| !FreeFramePool.isFree(slot)) {
+				continue;
+			}
+			filled++;
+			if (!PageFaultHandler.load(thread, other, slot)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Purpose: Caches a single TLB translation for the run of a page if the
+	 * whole run is in memory, each page in its slot of one block. Called on a
+	 * TLB miss for a valid page.
+	 *
+	 * Output: true if the run was promoted; otherwise the caller caches the
+	 * page's own translation.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean promote(TLB tlb, PageTable pageTable, int pageNumber) {
+		if (order == 0) {
+			return false;
+		}
+		int first = pageNumber & -size();
+		if (first + size() > pageTable.pages.length) {
+			return false;
+		}
+		FrameTableEntry base = pageTable.pages[first].getFrame();
+		if (base == null || (base.getID() & (size() - 1)) != 0) {
+			return false;
+		}
+		for (int i = 0; i < size(); i++) {
+			PageTableEntry page = pageTable.pages[first + i];
+			if (!page.isValid() || page.getFrame() != MMU.getFrame(base.getID() + i)) {
+				return false;
+			}
+		}
+		tlb.insertRun(pageTable.asid, pageTable.pages[first], base, order);
+		promotions++;
+		return true;
+	}
+
+	/**
+	 * Output: The superpage statistics, for MemoryStats.
+	 */
+	static String stats() {
+		return "Superpages (" + size() + " pages): " + blockFaults + " faults took a block, " + filled
+				+ " pages filled, " + promotions + " promotions, " + demotions + " demotions, "
+				+ FreeFramePool.blockCount() + " free blocks";
+	}
+
+}
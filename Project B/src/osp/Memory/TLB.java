@@ -0,0 +1,263 @@
+package osp.Memory;
+
+/**
+ * Purpose: A software translation lookaside buffer that sits in front of the
+ * page table walk in MMU.do_refer(). It is a small set-associative cache of
+ * page-to-frame translations. Every entry is tagged with the address space
+ * (PageTable.asid) it belongs to, so translations of several tasks can live in
+ * the TLB at the same time. Only valid pages are ever inserted; whoever takes a
+ * page away from its frame must call invalidate() (or flush() for a whole
+ * task) so that a hit is always a valid translation.
+ *
+ * The geometry is read from the [Memory] section of params.osp: TLBSets (the
+ * number of sets, rounded up to a power of two, 0 disables the TLB), TLBWays
+ * (entries per set) and TLBTagged (when 0, the whole TLB is flushed whenever
+ * the PTBR changes, i.e. on every context switch).
+ *
+ * An entry may also translate a whole superpage run (see Superpages): it is
+ * tagged with the run number and holds the run's first page and the first
+ * frame of its block, and a page of the run resolves to the frame at its
+ * offset in the block. A page lookup that misses probes the run's set next.
+ *
+ * @OSPProject Memory
+ */
+class TLB {
+	private final int sets;
+	private final int ways;
+	private final int setMask;
+
+	// entry i of set s lives at index s * ways + i
+	private final int[] tagAsid;
+	private final int[] tagPage;
+	private final PageTableEntry[] entries;
+	// a slot is valid when its frame is not null
+	private final FrameTableEntry[] frames;
+	// true for an entry that translates a superpage run
+	private final boolean[] run;
+	// log2 of the pages in a run; 0 until the first run is inserted
+	private int runOrder = 0;
+	// next way to replace in each set (round robin)
+	private final int[] nextWay;
+
+	private long hits;
+	private long runHits;
+	private long misses;
+	private long flushes;
+	private long invalidations;
+
+	/**
+	 * Purpose: Creates an empty TLB.
+	 *
+	 * Inputs: - sets the number of sets (rounded up to a power of two) - ways the
+	 * number of entries in each set
+	 *
+	 * @OSPProject Memory
+	 */
+	TLB(int sets, int ways) {
+		int n = 1;
+		while (n < sets) {
+			n <<= 1;
+		}
+		this.sets = n;
+		this.ways = Math.max(1, ways);
+		this.setMask = n - 1;
+
+		tagAsid = new int[this.sets * this.ways];
+		tagPage = new int[this.sets * this.ways];
+		entries = new PageTableEntry[this.sets * this.ways];
+		frames = new FrameTableEntry[this.sets * this.ways];
+		run = new boolean[this.sets * this.ways];
+		nextWay = new int[this.sets];
+	}
+
+	private int setOf(int asid, int pageNumber) {
+		return (pageNumber ^ (asid * 0x9E3779B1 >>> 16)) & setMask;
+	}
+
+	/**
+	 * Purpose: Looks up the translation of a page of the given address space.
+	 * Counts a hit or a miss.
+	 *
+	 * Output: The frame holding the page, or null on a miss.
+	 *
+	 * @OSPProject Memory
+	 */
+	FrameTableEntry lookup(int asid, int pageNumber) {
+		int base = setOf(asid, pageNumber) * ways;
+		for (int i = base; i < base + ways; i++) {
+			if (frames[i] != null && !run[i] && tagPage[i] == pageNumber && tagAsid[i] == asid) {
+				hits++;
+				return frames[i];
+			}
+		}
+		if (runOrder > 0) {
+			int runNumber = pageNumber >> runOrder;
+			base = setOf(asid, runNumber) * ways;
+			for (int i = base; i < base + ways; i++) {
+				if (frames[i] != null && run[i] && tagPage[i] == runNumber && tagAsid[i] == asid) {
+					hits++;
+					runHits++;
+					return MMU.getFrame(frames[i].getID() + (pageNumber & ((1 << runOrder) - 1)));
+				}
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Purpose: Caches the translation of a valid page. If the set is full, one of
+	 * its entries is replaced in round robin order.
+	 *
+	 * @OSPProject Memory
+	 */
+	void insert(int asid, PageTableEntry page, FrameTableEntry frame) {
+		insert(asid, page.getID(), page, frame);
+	}
+
+	/**
+	 * Purpose: As insert() above, with the page number given; page is only
+	 * compared by invalidate() and may be null where nothing invalidates, as in
+	 * MemoryBenchmark.
+	 *
+	 * @OSPProject Memory
+	 */
+	void insert(int asid, int pageNumber, PageTableEntry page, FrameTableEntry frame) {
+		int slot = slot(asid, pageNumber);
+		run[slot] = false;
+		tagAsid[slot] = asid;
+		tagPage[slot] = pageNumber;
+		entries[slot] = page;
+		frames[slot] = frame;
+	}
+
+	/**
+	 * Purpose: Caches the translation of a whole superpage run, every page of
+	 * which must be valid and in its slot of the block.
+	 *
+	 * Inputs: - first the first page of the run - base the first frame of the
+	 * block - order log2 of the pages in the run
+	 *
+	 * @OSPProject Memory
+	 */
+	void insertRun(int asid, PageTableEntry first, FrameTableEntry base, int order) {
+		runOrder = order;
+		int slot = slot(asid, first.getID() >> order);
+		run[slot] = true;
+		tagAsid[slot] = asid;
+		tagPage[slot] = first.getID() >> order;
+		entries[slot] = first;
+		frames[slot] = base;
+	}
+
+	/**
+	 * Purpose: Picks the entry for a new translation: a free way of the set,
+	 * or else the next one in round robin order.
+	 */
+	private int slot(int asid, int tag) {
+		int set = setOf(asid, tag);
+		int base = set * ways;
+		int slot = -1;
+		for (int i = base; i < base + ways; i++) {
+			if (frames[i] == null) {
+				slot = i;
+				break;
+			}
+		}
+		if (slot < 0) {
+			slot = base + nextWay[set];
+			nextWay[set] = (nextWay[set] + 1) % ways;
+		}
+		return slot;
+	}
+
+	/**
+	 * Purpose: Drops the translation of a single page, if it is cached, and
+	 * that of its superpage run. Must be called whenever a page loses its
+	 * frame.
+	 *
+	 * @OSPProject Memory
+	 */
+	void invalidate(PageTableEntry page) {
+		PageTable table = page.getTask().getPageTable();
+		int base = 0;
+		int end = entries.length;
+		if (table != null) {
+			base = setOf(table.asid, page.getID()) * ways;
+			end = base + ways;
+		}
+		for (int i = base; i < end; i++) {
+			if (entries[i] == page && !run[i]) {
+				entries[i] = null;
+				frames[i] = null;
+				invalidations++;
+			}
+		}
+		if (runOrder == 0) {
+			return;
+		}
+		int runNumber = page.getID() >> runOrder;
+		if (table != null) {
+			base = setOf(table.asid, runNumber) * ways;
+			end = base + ways;
+		}
+		for (int i = base; i < end; i++) {
+			if (entries[i] != null && run[i] && tagPage[i] == runNumber
+					&& entries[i].getTask() == page.getTask()) {
+				entries[i] = null;
+				frames[i] = null;
+				invalidations++;
+				Superpages.demotions++;
+			}
+		}
+	}
+
+	/**
+	 * Purpose: Drops every translation that belongs to the given address space.
+	 *
+	 * @OSPProject Memory
+	 */
+	void flush(int asid) {
+		for (int i = 0; i < entries.length; i++) {
+			if (frames[i] != null && tagAsid[i] == asid) {
+				entries[i] = null;
+				frames[i] = null;
+			}
+		}
+		flushes++;
+	}
+
+	/**
+	 * Purpose: Drops every translation in the TLB.
+	 *
+	 * @OSPProject Memory
+	 */
+	void flushAll() {
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = null;
+			frames[i] = null;
+		}
+		flushes++;
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Purpose: Summarizes the geometry and the hit/miss counters of the TLB.
+	 *
+	 * @OSPProject Memory
+	 */
+	public String toString() {
+		long lookups = hits + misses;
+		long ratio = lookups == 0 ? 0 : (hits * 100) / lookups;
+		return "TLB(" + sets + " sets x " + ways + " ways): hits " + hits + (runOrder > 0 ? " (superpages " + runHits + ")" : "")
+				+ ", misses " + misses + " (" + ratio + "% hits), invalidations " + invalidations + ", flushes " + flushes;
+	}
+
+}
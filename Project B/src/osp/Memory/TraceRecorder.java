@@ -0,0 +1,159 @@
+package osp.Memory;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import osp.Hardware.*;
+import osp.IFLModules.*;
+import osp.Tasks.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Records every memory reference to a binary trace file, for
+ * TraceReplay. Recording is on when the [Memory] section of params.osp names
+ * a TraceFile.
+ *
+ * The file starts with a header of 12 bytes: the magic number MAGIC, the
+ * format VERSION (short), PageAddressBits (byte), a reserved byte and the
+ * number of frames (int). Then come records of RECORD_SIZE bytes, big-endian:
+ * the tick (int), the task ID (int), the page number (unsigned short) and the
+ * type (byte): READ, WRITE, LOCK (a page locked for I/O by do_lock()) or END
+ * (the task has released its memory; the page number is 0).
+ *
+ * Records are collected in a direct buffer that is written out through a
+ * FileChannel whenever it is full, so recording does not allocate. The last
+ * partial buffer is written when the JVM exits and when MMU.init() runs
+ * again.
+ *
+ * @OSPProject Memory
+ */
+final class TraceRecorder {
+	static final int MAGIC = 0x4F535054; // "OSPT"
+	static final short VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	static final int RECORD_SIZE = 11;
+
+	static final byte READ = 0;
+	static final byte WRITE = 1;
+	static final byte LOCK = 2;
+	static final byte END = 3;
+
+	private static final int BUFFER_SIZE = RECORD_SIZE * 4096;
+
+	// true while a trace is being written; tested first on every reference
+	static boolean recording = false;
+	private static FileChannel channel;
+	private static ByteBuffer buffer;
+	private static boolean hooked = false;
+
+	private TraceRecorder() {
+	}
+
+	/**
+	 * Purpose: Opens the trace file named by TraceFile, if any, and writes its
+	 * header. Called from MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		close();
+		String path = MemoryConfig.getString("TraceFile", "");
+		if (path.length() == 0) {
+			return;
+		}
+		if (MMU.getPageAddressBits() > 16) {
+			MyOut.warning("osp.Memory.TraceRecorder", "Page numbers do not fit a trace record, not recording");
+			return;
+		}
+		try {
+			channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			MyOut.warning("osp.Memory.TraceRecorder", "Cannot open TraceFile " + path + ": " + e.getMessage());
+			return;
+		}
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.putInt(MAGIC).putShort(VERSION).put((byte) MMU.getPageAddressBits()).put((byte) 0)
+				.putInt(MMU.getFrameTableSize());
+		recording = true;
+		if (!hooked) {
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					close();
+				}
+			});
+			hooked = true;
+		}
+	}
+
+	/**
+	 * Purpose: Records a reference of MMU.do_refer() or PageTableEntry.do_lock().
+	 * Only to be called while recording is true.
+	 *
+	 * Inputs: - referenceType MemoryRead, MemoryWrite or MemoryLock
+	 *
+	 * @OSPProject Memory
+	 */
+	static void reference(TaskCB task, int page, int referenceType) {
+		byte type = referenceType == GlobalVariables.MemoryWrite ? WRITE
+				: referenceType == GlobalVariables.MemoryLock ? LOCK : READ;
+		record(task.getID(), page, type);
+	}
+
+	/**
+	 * Purpose: Records that a task has released its memory. Only to be called
+	 * while recording is true.
+	 */
+	static void taskEnded(TaskCB task) {
+		record(task.getID(), 0, END);
+	}
+
+	private static void record(int task, int page, byte type) {
+		if (buffer.remaining() < RECORD_SIZE) {
+			flush();
+			if (!recording) {
+				return;
+			}
+		}
+		buffer.putInt((int) HClock.get()).putInt(task).putShort((short) page).put(type);
+	}
+
+	/**
+	 * Purpose: Writes out the buffered records. A failed write stops the
+	 * recording with a warning.
+	 */
+	private static void flush() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			MyOut.warning("osp.Memory.TraceRecorder", "Trace recording stopped: " + e.getMessage());
+			recording = false;
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Purpose: Writes out the buffered records and closes the trace file.
+	 */
+	static synchronized void close() {
+		if (channel == null) {
+			return;
+		}
+		if (recording) {
+			flush();
+		}
+		recording = false;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the records are written already
+		}
+		channel = null;
+		buffer = null;
+	}
+
+}
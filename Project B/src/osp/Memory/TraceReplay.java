@@ -0,0 +1,352 @@
+package osp.Memory;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Purpose: Replays a trace written by TraceRecorder through the replacement
+ * policies, outside the simulator, and reports the page faults and the
+ * writes of dirty victims each policy would cause with a given number of
+ * frames.
+ *
+ * Usage: java -cp classes osp.Memory.TraceReplay trace [policies] [frames]
+ *
+ * policies is a comma separated list of ReplacementPolicy names or OPT
+ * (default FIFO,Clock,LRU,NRU,WSClock,CAR) and frames a comma separated list of frame
+ * counts (default the FramesOfPhysicalMemory of the recorded run).
+ *
+ * The policies are the simulator's own, with wantFree 1, run on a FrameTable
+ * of ReplayFrames. The replay sets and clears the reference and dirty bits
+ * as MMU.do_refer() and the page fault handler do: a faulting page is loaded
+ * clean, then referenced, and dirtied by a write. Locks for I/O count as reads. There is
+ * no I/O timing, so a fault completes at once, and no background daemon
+ * runs. When a task ends its frames become free.
+ *
+ * @OSPProject Memory
+ */
+final class TraceReplay {
+	static final String DEFAULT_POLICIES = "FIFO,Clock,LRU,NRU,WSClock,CAR";
+
+	// the records of the trace, one entry per record; pages are numbered
+	// densely over all tasks, from 0 to pageCount - 1
+	final int[] ticks;
+	final int[] tasks;
+	final int[] pages;
+	final byte[] types;
+	final int pageCount;
+	// FramesOfPhysicalMemory of the recorded run
+	final int recordedFrames;
+	// see nextUse()
+	private int[] nextUse;
+
+	TraceReplay(int[] ticks, int[] tasks, int[] pages, byte[] types, int pageCount, int recordedFrames) {
+		this.ticks = ticks;
+		this.tasks = tasks;
+		this.pages = pages;
+		this.types = types;
+		this.pageCount = pageCount;
+		this.recordedFrames = recordedFrames;
+	}
+
+	int size() {
+		return types.length;
+	}
+
+	/**
+	 * Purpose: The next-use index of the trace, built on the first call in one
+	 * backward pass: for every reference, the position of the next reference to
+	 * the same page, or Integer.MAX_VALUE if there is none.
+	 *
+	 * @OSPProject Memory
+	 */
+	int[] nextUse() {
+		if (nextUse == null) {
+			int[] last = new int[pageCount];
+			Arrays.fill(last, Integer.MAX_VALUE);
+			nextUse = new int[types.length];
+			for (int i = types.length - 1; i >= 0; i--) {
+				if (types[i] != TraceRecorder.END) {
+					nextUse[i] = last[pages[i]];
+					last[pages[i]] = i;
+				}
+			}
+		}
+		return nextUse;
+	}
+
+	/**
+	 * Output: The number of ticks from the first to the last record.
+	 */
+	long duration() {
+		return types.length == 0 ? 0 : (long) ticks[types.length - 1] - ticks[0];
+	}
+
+	/**
+	 * Purpose: Reads a trace file.
+	 *
+	 * Output: The trace; an IOException if the file is not a trace.
+	 *
+	 * @OSPProject Memory
+	 */
+	static TraceReplay load(Path path) throws IOException {
+		ByteBuffer in;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (in.remaining() < TraceRecorder.HEADER_SIZE || in.getInt() != TraceRecorder.MAGIC) {
+			throw new IOException(path + " is not a memory reference trace");
+		}
+		if (in.getShort() != TraceRecorder.VERSION) {
+			throw new IOException(path + " has an unknown trace version");
+		}
+		in.get();
+		in.get();
+		int frames = in.getInt();
+
+		int count = in.remaining() / TraceRecorder.RECORD_SIZE;
+		int[] ticks = new int[count];
+		int[] tasks = new int[count];
+		int[] pages = new int[count];
+		byte[] types = new byte[count];
+		Map<Long, Integer> numbers = new HashMap<Long, Integer>();
+		for (int i = 0; i < count; i++) {
+			ticks[i] = in.getInt();
+			tasks[i] = in.getInt();
+			int page = in.getShort() & 0xFFFF;
+			types[i] = in.get();
+			if (types[i] != TraceRecorder.END) {
+				Long key = ((long) tasks[i] << 16) | page;
+				Integer number = numbers.get(key);
+				if (number == null) {
+					number = numbers.size();
+					numbers.put(key, number);
+				}
+				pages[i] = number;
+			}
+		}
+		return new TraceReplay(ticks, tasks, pages, types, numbers.size(), frames);
+	}
+
+	/**
+	 * Purpose: The outcome of one replay.
+	 */
+	static class Result {
+		final String policy;
+		final int frames;
+		long references = 0;
+		long faults = 0;
+		long dirtyEvictions = 0;
+		long nanos = 0;
+
+		Result(String policy, int frames) {
+			this.policy = policy;
+			this.frames = frames;
+		}
+
+		public String toString() {
+			return String.format("%-8s %7d %10d %9d %6.2f%% %9d %8.1f ms", policy, frames, references, faults,
+					references == 0 ? 0.0 : 100.0 * faults / references, dirtyEvictions, nanos / 1e6);
+		}
+	}
+
+	/**
+	 * Purpose: The frame table of a replay. A clean page that the policy
+	 * evicts leaves its frame free at once, as does every page of a task
+	 * that ends.
+	 */
+	static final class Frames implements FrameTable {
+		final ReplayFrame[] frames;
+		final FrameList free;
+		// per page: the ID of the frame holding it, or -1
+		final int[] frameOf;
+		// the policy told about unloaded pages, and the tick of the record
+		// being replayed
+		ReplacementPolicy policy;
+		long now;
+
+		Frames(int count, int pageCount) {
+			frames = new ReplayFrame[count];
+			free = new FrameList(count);
+			for (int i = 0; i < count; i++) {
+				frames[i] = new ReplayFrame(i);
+				free.append(i);
+			}
+			frameOf = new int[pageCount];
+			Arrays.fill(frameOf, -1);
+		}
+
+		public int size() {
+			return frames.length;
+		}
+
+		public PolicyFrame getFrame(int id) {
+			return frames[id];
+		}
+
+		public boolean isEvictable(PolicyFrame frame) {
+			return frame.getPage() != null;
+		}
+
+		public int numFreeFrames() {
+			return free.size();
+		}
+
+		public PolicyFrame getFreeFrame() {
+			return free.size() == 0 ? null : frames[free.head()];
+		}
+
+		public void freeFrame(PolicyFrame frame) {
+			unload((ReplayFrame) frame);
+			free.append(frame.getID());
+		}
+
+		public long now() {
+			return now;
+		}
+
+		/**
+		 * Purpose: Frees a frame whose page belongs to a task that ended.
+		 */
+		void deallocate(ReplayFrame frame) {
+			policy.pageDeallocated(frame);
+			clear(frame);
+			free.append(frame.id);
+		}
+
+		void unload(ReplayFrame frame) {
+			policy.pageUnloaded(frame);
+			clear(frame);
+		}
+
+		private void clear(ReplayFrame frame) {
+			frameOf[frame.page] = -1;
+			frame.page = null;
+			frame.referenced = false;
+			frame.dirty = false;
+		}
+	}
+
+	/**
+	 * Output: A frame table of count frames, all free, for this trace.
+	 */
+	Frames frames(int count) {
+		return new Frames(count, pageCount);
+	}
+
+	/**
+	 * Purpose: Creates a policy on frames: OPT, or a ReplacementPolicy with
+	 * its default settings.
+	 *
+	 * Output: The policy, or null if the name is unknown.
+	 *
+	 * @OSPProject Memory
+	 */
+	ReplacementPolicy policy(String name, Frames frames) {
+		if (name.equalsIgnoreCase("OPT") || name.equalsIgnoreCase("MIN")) {
+			return new OptPolicy(frames, nextUse());
+		}
+		return ReplacementPolicy.forName(name, frames, WSClockPolicy.DEFAULT_TAU);
+	}
+
+	/**
+	 * Purpose: Replays the whole trace through one policy. policy must have
+	 * been created on memory, whose frames are all free.
+	 *
+	 * @OSPProject Memory
+	 */
+	Result run(ReplacementPolicy policy, Frames memory) {
+		Result result = new Result(policy.getName(), memory.size());
+		long start = System.nanoTime();
+		memory.policy = policy;
+		OptPolicy opt = policy instanceof OptPolicy ? (OptPolicy) policy : null;
+
+		for (int i = 0; i < types.length; i++) {
+			memory.now = ticks[i];
+			if (types[i] == TraceRecorder.END) {
+				for (ReplayFrame frame : memory.frames) {
+					if (frame.page != null && frame.task == tasks[i]) {
+						memory.deallocate(frame);
+					}
+				}
+				continue;
+			}
+			result.references++;
+			boolean write = types[i] == TraceRecorder.WRITE;
+			int page = pages[i];
+			if (memory.frameOf[page] >= 0) {
+				ReplayFrame frame = memory.frames[memory.frameOf[page]];
+				frame.referenced = true;
+				frame.dirty |= write;
+				if (opt != null) {
+					opt.pageReferenced(frame, i);
+				}
+				continue;
+			}
+
+			result.faults++;
+			ReplayFrame frame = (ReplayFrame) memory.getFreeFrame();
+			if (frame == null) {
+				// the policy frees a clean victim itself and hands back a
+				// dirty one, which would be swapped out first
+				frame = (ReplayFrame) policy.selectVictim();
+				if (frame == null) {
+					// no frame can be had, as when the fault handler reports
+					// NotEnoughMemory; the page stays out and faults again
+					continue;
+				}
+				if (frame.page != null) {
+					result.dirtyEvictions++;
+					memory.unload(frame);
+				}
+			}
+			memory.free.remove(frame.id);
+			frame.page = page;
+			frame.task = tasks[i];
+			memory.frameOf[page] = frame.id;
+			policy.pageLoaded(frame);
+			frame.referenced = true;
+			frame.dirty = write;
+			if (opt != null) {
+				opt.pageReferenced(frame, i);
+			}
+		}
+		result.nanos = System.nanoTime() - start;
+		return result;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: java osp.Memory.TraceReplay trace [policies] [frames]");
+			System.exit(1);
+		}
+		TraceReplay trace = load(Paths.get(args[0]));
+		String[] policies = (args.length > 1 && args[1].length() > 0 ? args[1] : DEFAULT_POLICIES).split(",");
+		String[] counts = (args.length > 2 && args[2].length() > 0 ? args[2] : "" + trace.recordedFrames).split(",");
+		for (String count : counts) {
+			if (Integer.parseInt(count.trim()) < 1) {
+				System.err.println("Usage: java osp.Memory.TraceReplay trace [policies] [frames]");
+				System.err.println("Every frame count must be at least 1");
+				System.exit(1);
+			}
+		}
+
+		System.out.println(trace.size() + " records, " + trace.pageCount + " distinct pages");
+		System.out.println("policy    frames references    faults  rate   dirty ev     replay");
+		for (String count : counts) {
+			int frames = Integer.parseInt(count.trim());
+			for (String name : policies) {
+				Frames memory = trace.frames(frames);
+				ReplacementPolicy policy = trace.policy(name.trim(), memory);
+				if (policy == null) {
+					System.err.println("Unknown policy " + name);
+					System.exit(1);
+				}
+				System.out.println(trace.run(policy, memory));
+			}
+		}
+	}
+
+}
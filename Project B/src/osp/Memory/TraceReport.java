@@ -0,0 +1,169 @@
+package osp.Memory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Purpose: Compares replacement policies on a trace written by
+ * TraceRecorder over a sweep of frame counts, against Belady's optimal
+ * policy (OPT). For every policy the report gives the miss ratio curve
+ * (faults per reference) and the fault rate curve (faults per 1000 ticks of
+ * the recorded run) as functions of the number of frames, then the faults
+ * each extra frame saves between two points of the sweep, which shows where
+ * adding frames pays most.
+ *
+ * Usage: java -cp classes osp.Memory.TraceReport trace [policies] [frames]
+ *
+ * policies is a comma separated list as for TraceReplay; OPT is always
+ * included (default OPT,Clock,FIFO,LRU,NRU,WSClock,CAR). frames is a comma
+ * separated list of frame counts or a range first:last[:step]; by default 16
+ * steps up to twice the FramesOfPhysicalMemory of the recorded run.
+ *
+ * @OSPProject Memory
+ */
+final class TraceReport {
+	static final String DEFAULT_POLICIES = "OPT,Clock,FIFO,LRU,NRU,WSClock,CAR";
+
+	private TraceReport() {
+	}
+
+	/**
+	 * Purpose: Parses a list of frame counts or a range first:last[:step].
+	 *
+	 * Output: The frame counts, or null if a count or the step is below 1.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int[] parseFrames(String spec) {
+		if (spec.indexOf(':') >= 0) {
+			String[] range = spec.split(":");
+			int first = Integer.parseInt(range[0].trim());
+			int last = Integer.parseInt(range[1].trim());
+			int step = range.length > 2 ? Integer.parseInt(range[2].trim()) : 1;
+			if (first < 1 || step < 1) {
+				return null;
+			}
+			int[] frames = new int[Math.max(0, (last - first) / step + 1)];
+			for (int i = 0; i < frames.length; i++) {
+				frames[i] = first + i * step;
+			}
+			return frames;
+		}
+		String[] list = spec.split(",");
+		int[] frames = new int[list.length];
+		for (int i = 0; i < list.length; i++) {
+			frames[i] = Integer.parseInt(list[i].trim());
+			if (frames[i] < 1) {
+				return null;
+			}
+		}
+		return frames;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: java osp.Memory.TraceReport trace [policies] [frames]");
+			System.exit(1);
+		}
+		TraceReplay trace = TraceReplay.load(Paths.get(args[0]));
+		List<String> policies = new ArrayList<String>();
+		policies.add("OPT");
+		for (String name : (args.length > 1 && args[1].length() > 0 ? args[1] : DEFAULT_POLICIES).split(",")) {
+			if (!name.trim().equalsIgnoreCase("OPT") && !name.trim().equalsIgnoreCase("MIN")) {
+				policies.add(name.trim());
+			}
+		}
+		int top = Math.max(2, 2 * trace.recordedFrames);
+		int[] frames = parseFrames(args.length > 2 && args[2].length() > 0 ? args[2]
+				: "1:" + top + ":" + Math.max(1, top / 16));
+		if (frames == null) {
+			System.err.println("Usage: java osp.Memory.TraceReport trace [policies] [frames]");
+			System.err.println("Every frame count and the step must be at least 1");
+			System.exit(1);
+		}
+
+		TraceReplay.Result[][] results = new TraceReplay.Result[frames.length][policies.size()];
+		for (int f = 0; f < frames.length; f++) {
+			for (int p = 0; p < policies.size(); p++) {
+				TraceReplay.Frames memory = trace.frames(frames[f]);
+				ReplacementPolicy policy = trace.policy(policies.get(p), memory);
+				if (policy == null) {
+					System.err.println("Unknown policy " + policies.get(p));
+					System.exit(1);
+				}
+				results[f][p] = trace.run(policy, memory);
+			}
+		}
+
+		long references = results.length == 0 ? 0 : results[0][0].references;
+		long duration = Math.max(1, trace.duration());
+		System.out.println(args[0] + ": " + references + " references to " + trace.pageCount + " pages over "
+				+ duration + " ticks, recorded with " + trace.recordedFrames + " frames");
+
+		System.out.println();
+		System.out.println("Miss ratio (faults per reference, %)");
+		header(policies);
+		for (int f = 0; f < frames.length; f++) {
+			System.out.printf("%6d", frames[f]);
+			for (TraceReplay.Result result : results[f]) {
+				System.out.printf(" %8.2f", 100.0 * result.faults / Math.max(1, references));
+			}
+			System.out.println();
+		}
+
+		System.out.println();
+		System.out.println("Fault rate (faults per 1000 ticks)");
+		header(policies);
+		for (int f = 0; f < frames.length; f++) {
+			System.out.printf("%6d", frames[f]);
+			for (TraceReplay.Result result : results[f]) {
+				System.out.printf(" %8.2f", 1000.0 * result.faults / duration);
+			}
+			System.out.println();
+		}
+
+		System.out.println();
+		System.out.println("Faults saved per extra frame, from the previous row");
+		header(policies);
+		int[] best = new int[policies.size()];
+		double[] bestGain = new double[policies.size()];
+		for (int f = 1; f < frames.length; f++) {
+			System.out.printf("%6d", frames[f]);
+			for (int p = 0; p < policies.size(); p++) {
+				double gain = (double) (results[f - 1][p].faults - results[f][p].faults)
+						/ Math.max(1, frames[f] - frames[f - 1]);
+				System.out.printf(" %8.1f", gain);
+				if (gain > bestGain[p]) {
+					bestGain[p] = gain;
+					best[p] = f;
+				}
+			}
+			System.out.println();
+		}
+
+		System.out.println();
+		for (int p = 0; p < policies.size(); p++) {
+			StringBuilder line = new StringBuilder(String.format("%-8s", policies.get(p)));
+			if (bestGain[p] > 0) {
+				line.append(String.format(" gains most from %d to %d frames (%.1f faults per frame)",
+						frames[best[p] - 1], frames[best[p]], bestGain[p]));
+			}
+			if (p > 0 && frames.length > 0) {
+				int last = frames.length - 1;
+				line.append(String.format("; %.2fx the faults of OPT at %d frames",
+						(double) results[last][p].faults / Math.max(1, results[last][0].faults), frames[last]));
+			}
+			System.out.println(line);
+		}
+	}
+
+	private static void header(List<String> policies) {
+		System.out.printf("%6s", "frames");
+		for (String name : policies) {
+			System.out.printf(" %8s", name);
+		}
+		System.out.println();
+	}
+
+}
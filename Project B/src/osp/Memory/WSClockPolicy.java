@@ -0,0 +1,81 @@
+package osp.Memory;
+
+/**
+ * Purpose: The WSClock replacement policy. Every frame remembers the last time
+ * (in simulated ticks) its reference bit was seen set. The clock hand clears
+ * reference bits and refreshes that time; an unreferenced frame whose page has
+ * not been used for more than tau ticks is outside the working set and is
+ * evicted if it is clean. If the search finds no such clean frame, the
+ * oldest dirty page outside the working set is swapped out, and failing that
+ * the oldest evictable frame is taken.
+ *
+ * tau is the WSClockTau key of the [Memory] section of params.osp, in ticks
+ * of FrameTable.now().
+ *
+ * @OSPProject Memory
+ */
+class WSClockPolicy extends AbstractReplacementPolicy {
+	static final int DEFAULT_TAU = 2000;
+
+	private final long tau;
+	private final long[] lastUse = new long[frames.size()];
+	private int cursor = 0;
+
+	WSClockPolicy(FrameTable frames, int tau) {
+		super(frames);
+		this.tau = tau;
+	}
+
+	public String getName() {
+		return "WSClock";
+	}
+
+	public void pageLoaded(PolicyFrame frame) {
+		lastUse[frame.getID()] = frames.now();
+	}
+
+	protected PolicyFrame pickVictim() {
+		int size = frames.size();
+		long now = frames.now();
+		PolicyFrame oldDirty = null;
+		PolicyFrame oldest = null;
+
+		// the first turn may do nothing but clear reference bits
+		for (int n = 0; n < 2 * size; n++) {
+			if (n == size && oldest != null) {
+				break;
+			}
+			PolicyFrame frame = frames.getFrame(cursor);
+			cursor = (cursor + 1) % size;
+			if (frame.getPage() == null) {
+				continue;
+			}
+			int id = frame.getID();
+			if (frame.isReferenced()) {
+				frame.setReferenced(false);
+				lastUse[id] = now;
+				continue;
+			}
+			if (!frames.isEvictable(frame)) {
+				continue;
+			}
+			if (now - lastUse[id] > tau) {
+				if (!frame.isDirty()) {
+					return frame;
+				}
+				if (oldDirty == null || lastUse[id] < lastUse[oldDirty.getID()]) {
+					oldDirty = frame;
+				}
+			}
+			if (oldest == null || lastUse[id] < lastUse[oldest.getID()]) {
+				oldest = frame;
+			}
+		}
+		return oldDirty != null ? oldDirty : oldest;
+	}
+
+	public String toString() {
+		return getName() + "(wantFree " + wantFree + ", tau " + tau + ")";
+	}
+
+}
@@ -0,0 +1,132 @@
+package osp.Memory;
+
+import osp.Hardware.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Tasks.*;
+
+/**
+ * Purpose: Local page replacement with per-task frame quotas, for
+ * ReplacementScope Local in the [Memory] section of params.osp.
+ *
+ * Every WorkingSetInterval ticks a daemon samples the frames: a frame that
+ * was referenced since the last sample is stamped with the current time. The
+ * sampler has its own reference bit (FrameTableEntry.sampled), so the
+ * reference bits the global replacement policy relies on are left alone. The
+ * working set of a task is the number of its frames that
+ * were stamped within the last WorkingSetWindow ticks, and its quota is one
+ * frame more than that (to let it grow), but at least QuotaMin frames.
+ *
+ * A task that holds its quota or more replaces one of its own pages on a page
+ * fault, so that one task with a large footprint cannot push the working sets
+ * of the others out of memory. Tasks below their quota take a free frame or
+ * go through the global replacement policy as before.
+ *
+ * @OSPProject Memory
+ */
+class WorkingSetQuota implements DaemonInterface {
+	// the quotas in use; null when replacement is global. MemoryStats prints
+	// its counters
+	static WorkingSetQuota instance = null;
+
+	private final long window;
+	private final int minQuota;
+	private long localFaults = 0;
+
+	WorkingSetQuota(int window, int minQuota) {
+		this.window = Math.max(1, window);
+		this.minQuota = Math.max(1, minQuota);
+	}
+
+	/**
+	 * Purpose: Turns local replacement on, with the sampler run by the
+	 * MemoryDaemon, if the [Memory] section of params.osp asks for it. Called
+	 * from MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		instance = null;
+		if (!MemoryConfig.getString("ReplacementScope", "Global").equalsIgnoreCase("Local")) {
+			return;
+		}
+		instance = new WorkingSetQuota(MemoryConfig.getInt("WorkingSetWindow", 2000),
+				MemoryConfig.getInt("QuotaMin", 2));
+		MemoryDaemon.add("Working set sampler", instance, MemoryConfig.getInt("WorkingSetInterval", 500));
+	}
+
+	/**
+	 * Purpose: One sampling pass: stamps and clears the sampled bits, then
+	 * recomputes the working set and the quota of every task with frames.
+	 *
+	 * @OSPProject Memory
+	 */
+	public void unleash(ThreadCB thread) {
+		long now = HClock.get();
+		int size = MMU.getFrameTableSize();
+
+		for (int i = 0; i < size; i++) {
+			FrameTableEntry frame = MMU.getFrame(i);
+			if (frame.rmapOwner != null) {
+				frame.rmapOwner.workingSet = 0;
+			}
+			if (frame.getPage() != null && frame.sampled) {
+				frame.lastSeen = now;
+				frame.sampled = false;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			FrameTableEntry frame = MMU.getFrame(i);
+			PageTable owner = frame.rmapOwner;
+			if (owner != null && now - frame.lastSeen <= window) {
+				owner.workingSet++;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			PageTable owner = MMU.getFrame(i).rmapOwner;
+			if (owner != null) {
+				owner.quota = Math.max(minQuota, owner.workingSet + 1);
+			}
+		}
+	}
+
+	/**
+	 * Purpose: Picks the frame a page fault of the task must reuse when the
+	 * task holds its quota: one of its own evictable frames, preferring frames
+	 * that were not referenced since the last sample, then clean ones, then the
+	 * one seen in use longest ago.
+	 *
+	 * Output: The victim, or null if replacement is global, the task is below
+	 * its quota or none of its frames can be evicted.
+	 *
+	 * @OSPProject Memory
+	 */
+	static FrameTableEntry localVictim(TaskCB task) {
+		PageTable pageTable = task.getPageTable();
+		if (instance == null || pageTable == null || pageTable.quota == 0
+				|| pageTable.getResidentCount() < pageTable.quota) {
+			return null;
+		}
+		FrameTableEntry victim = null;
+		int victimClass = 4;
+		for (FrameTableEntry frame : pageTable.getResidentFrames()) {
+			if (!PageFaultHandler.isEvictable(frame)) {
+				continue;
+			}
+			int frameClass = (frame.sampled ? 2 : 0) + (frame.isDirty() ? 1 : 0);
+			if (frameClass < victimClass || (frameClass == victimClass && frame.lastSeen < victim.lastSeen)) {
+				victim = frame;
+				victimClass = frameClass;
+			}
+		}
+		if (victim != null) {
+			instance.localFaults++;
+		}
+		return victim;
+	}
+
+	public String toString() {
+		return "WorkingSetQuota(window " + window + ", min " + minQuota + "): " + localFaults + " local replacements";
+	}
+
+}
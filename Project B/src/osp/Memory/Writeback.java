@@ -0,0 +1,203 @@
+package osp.Memory;
+
+import java.util.*;
+import osp.IFLModules.*;
+import osp.Threads.*;
+import osp.Tasks.*;
+import osp.Utilities.*;
+
+/**
+ * Purpose: Writes dirty frames to swap on behalf of the background daemons.
+ * A batch of victims is written in swap order (by task, then by page number)
+ * so that the pages of a task that sit next to each other in its swap file
+ * are written one after the other, which keeps the seeks of the swap device
+ * short. The frames of a batch are reserved when the policy picks them, so
+ * that none of them can be taken while the others are being written.
+ *
+ * OSP only offers a one page write that blocks the calling thread, so a batch
+ * is a run of such writes issued back to back by one daemon thread.
+ *
+ * Swap-ins go first. OSP places every swap file on a device of its own
+ * choosing and has no priorities among the requests queued for a device, so
+ * a background write queued ahead of a page fault's swap-in can delay the
+ * fault by a whole transfer. With SwapInPriority on (the default) the daemons
+ * hold back their writes while a fault is waiting for a swap-in and a free
+ * frame is left; they resume on their next wake-up.
+ *
+ * @OSPProject Memory
+ */
+final class Writeback {
+
+	// swap order: by task, then by page number
+	static final Comparator<FrameTableEntry> SWAP_ORDER = new Comparator<FrameTableEntry>() {
+		public int compare(FrameTableEntry a, FrameTableEntry b) {
+			PageTableEntry pa = a.getPage();
+			PageTableEntry pb = b.getPage();
+			if (pa == null || pb == null) {
+				return pa == null ? (pb == null ? 0 : 1) : -1;
+			}
+			if (pa.getTask().getID() != pb.getTask().getID()) {
+				return pa.getTask().getID() < pb.getTask().getID() ? -1 : 1;
+			}
+			return pa.getID() - pb.getID();
+		}
+	};
+
+	private static long batches = 0;
+	private static long pages = 0;
+	// runs of adjacent pages of one task within the batches
+	private static long clusters = 0;
+	// when true, background writes give way to swap-ins
+	private static boolean swapInPriority = true;
+	// batches and passes cut short for a swap-in
+	private static long deferrals = 0;
+	// pages written again while their swap-out was in flight
+	private static long rewritten = 0;
+
+	private Writeback() {
+	}
+
+	/**
+	 * Purpose: Reads SwapInPriority from the [Memory] section. Called from
+	 * MMU.init().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void init() {
+		swapInPriority = MemoryConfig.getInt("SwapInPriority", 1) != 0;
+		batches = pages = clusters = deferrals = rewritten = 0;
+	}
+
+	/**
+	 * Purpose: Tells whether a daemon should hold back its remaining writes
+	 * because a page fault is waiting for a swap-in. When the pool is empty
+	 * the writes go on, as the next faults need the frames they clean.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean yielding() {
+		if (swapInPriority && PageFaultHandler.swapInsInFlight > 0 && FreeFramePool.size() > 0) {
+			deferrals++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Purpose: Reserves a dirty victim for the task of its page until its batch
+	 * has been written. Used by the policies' selectDirtyVictims().
+	 *
+	 * @OSPProject Memory
+	 */
+	static void reserve(FrameTableEntry frame) {
+		frame.reserve(frame.getPage().getTask());
+	}
+
+	/**
+	 * Purpose: Writes the page of an evictable or reserved dirty frame to its
+	 * task's swap file and marks the frame clean once the write has completed,
+	 * unless the page was written again while the write was in flight: the
+	 * copy in swap is stale then, and the frame stays dirty. The page stays in
+	 * the frame, and the frame is not reserved afterwards.
+	 *
+	 * Inputs: - frame the frame to clean - thread the daemon thread that
+	 * performs the write
+	 *
+	 * Output: true if the frame was cleaned.
+	 *
+	 * @OSPProject Memory
+	 */
+	static boolean write(FrameTableEntry frame, ThreadCB thread) {
+		PageTableEntry page = frame.getPage();
+		TaskCB task = page.getTask();
+		boolean cleaned = false;
+
+		if (frame.getReserved() != task) {
+			frame.reserve(task);
+		}
+		long writes = frame.writes;
+		task.getSwapFile().write(page.getID(), page, thread);
+		MemoryStats.swappedOut(page);
+
+		// OSP only accepts a clean frame once the swap-out has completed
+		if (thread.getStatus() != GlobalVariables.ThreadKill && frame.getPage() == page) {
+			page.swapped = true;
+			if (frame.writes == writes) {
+				frame.setDirty(false);
+				cleaned = true;
+			} else {
+				rewritten++;
+			}
+		}
+		// do_deallocateMemory, or OSP for a killed thread, may have dropped the
+		// reservation meanwhile
+		frame.release(task);
+		return cleaned;
+	}
+
+	/**
+	 * Purpose: Writes a batch of dirty victims chosen by
+	 * ReplacementPolicy.selectDirtyVictims() in swap order and frees the ones
+	 * that were not used during the writes. The rest of the batch is dropped
+	 * when the writes must give way to a swap-in. Every frame of the batch is
+	 * unreserved, whatever happens to the thread.
+	 *
+	 * Inputs: - batch the reserved victims - thread the daemon thread that
+	 * performs the writes
+	 *
+	 * Output: The number of frames freed.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int writeBatch(List<FrameTableEntry> batch, ThreadCB thread) {
+		PageTableEntry[] victims = new PageTableEntry[batch.size()];
+		Collections.sort(batch, SWAP_ORDER);
+		for (int i = 0; i < batch.size(); i++) {
+			victims[i] = batch.get(i).getPage();
+		}
+		batches++;
+
+		int freed = 0;
+		PageTableEntry previous = null;
+		boolean yielded = false;
+		for (int i = 0; i < batch.size(); i++) {
+			FrameTableEntry frame = batch.get(i);
+			PageTableEntry page = victims[i];
+			yielded = yielded || yielding();
+			// the task may have died, and OSP may have emptied the frame, since it was picked
+			if (yielded || page == null || frame.getPage() != page
+					|| thread.getStatus() == GlobalVariables.ThreadKill
+					|| page.getTask().getStatus() == GlobalVariables.TaskTerm) {
+				if (page != null) {
+					frame.release(page.getTask());
+				}
+				continue;
+			}
+
+			pages++;
+			if (previous == null || previous.getTask() != page.getTask() || previous.getID() + 1 != page.getID()) {
+				clusters++;
+			}
+			previous = page;
+
+			if (write(frame, thread) && PageFaultHandler.isEvictable(frame) && !frame.isDirty()
+					&& !frame.isReferenced()) {
+				PageFaultHandler.freeFrame(frame);
+				freed++;
+			}
+		}
+		return freed;
+	}
+
+	/**
+	 * Purpose: Returns the batching statistics for MemoryStats.print().
+	 *
+	 * @OSPProject Memory
+	 */
+	static String stats() {
+		return "Writeback: " + pages + " pages in " + batches + " batches, " + clusters
+				+ " runs of adjacent pages, " + deferrals + " deferred for swap-ins, " + rewritten
+				+ " written again during the write";
+	}
+
+}
@@ -0,0 +1,89 @@
+package osp.Memory;
+
+import java.util.*;
+
+/**
+ * Purpose: Checks that OptPolicy is Belady-optimal: on small random traces
+ * its fault count under TraceReplay must equal the least number of faults
+ * any replacement can achieve, found by a brute-force search over every
+ * choice of victim.
+ *
+ * Usage: javac -cp OSP.jar -d classes src/osp/Memory/*.java
+ * test/osp/Memory/*.java; java -cp OSP.jar:classes osp.Memory.OptPolicyTest
+ *
+ * Exits with status 1 on the first trace where the counts differ.
+ *
+ * @OSPProject Memory
+ */
+final class OptPolicyTest {
+	static final int TRACES = 200;
+
+	private OptPolicyTest() {
+	}
+
+	/**
+	 * Purpose: The least number of faults for the references from position
+	 * on, with the given pages in memory and frames frames, by trying every
+	 * victim on every fault.
+	 *
+	 * @OSPProject Memory
+	 */
+	static int belady(int[] pages, int position, Set<Integer> resident, int frames, Map<String, Integer> memo) {
+		if (position == pages.length) {
+			return 0;
+		}
+		String key = position + " " + new TreeSet<Integer>(resident);
+		Integer known = memo.get(key);
+		if (known != null) {
+			return known;
+		}
+		int page = pages[position];
+		int best;
+		if (resident.contains(page)) {
+			best = belady(pages, position + 1, resident, frames, memo);
+		} else if (resident.size() < frames) {
+			Set<Integer> next = new HashSet<Integer>(resident);
+			next.add(page);
+			best = 1 + belady(pages, position + 1, next, frames, memo);
+		} else {
+			best = Integer.MAX_VALUE;
+			for (Integer victim : resident) {
+				Set<Integer> next = new HashSet<Integer>(resident);
+				next.remove(victim);
+				next.add(page);
+				best = Math.min(best, 1 + belady(pages, position + 1, next, frames, memo));
+			}
+		}
+		memo.put(key, best);
+		return best;
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+		for (int n = 0; n < TRACES; n++) {
+			int length = 8 + random.nextInt(17);
+			int pageCount = 2 + random.nextInt(6);
+			int frames = 1 + random.nextInt(Math.min(4, pageCount));
+			int[] ticks = new int[length];
+			int[] tasks = new int[length];
+			int[] pages = new int[length];
+			byte[] types = new byte[length];
+			for (int i = 0; i < length; i++) {
+				ticks[i] = i;
+				pages[i] = random.nextInt(pageCount);
+				types[i] = random.nextBoolean() ? TraceRecorder.READ : TraceRecorder.WRITE;
+			}
+			TraceReplay trace = new TraceReplay(ticks, tasks, pages, types, pageCount, frames);
+			TraceReplay.Frames memory = trace.frames(frames);
+			long opt = trace.run(trace.policy("OPT", memory), memory).faults;
+			int best = belady(pages, 0, new HashSet<Integer>(), frames, new HashMap<String, Integer>());
+			if (opt != best) {
+				System.out.println("FAIL: " + frames + " frames, trace " + Arrays.toString(pages) + ": OPT "
+						+ opt + " faults, Belady " + best);
+				System.exit(1);
+			}
+		}
+		System.out.println("OK: OPT matched Belady on " + TRACES + " random traces");
+	}
+
+}